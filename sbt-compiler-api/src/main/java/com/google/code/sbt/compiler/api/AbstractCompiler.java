@@ -68,6 +68,30 @@ public abstract class AbstractCompiler
         return result;
     }
 
+    /**
+     * Waits for compilation start permission, if configured.
+     * 
+     * @param configuration compiler configuration object
+     * @throws CompilerException if interrupted while waiting
+     */
+    protected void acquireCompilationPermit( CompilerConfiguration configuration )
+        throws CompilerException
+    {
+        CompilationPermit compilationPermit = configuration.getCompilationPermit();
+        if ( compilationPermit != null )
+        {
+            try
+            {
+                compilationPermit.acquire();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new CompilerException( "Scala compilation interrupted", e );
+            }
+        }
+    }
+
     // Copied from commons-exec org.apache.commons.exec.CommandLine.translateCommandline(String) method
     // because it's private there and cannot be referenced from here.
     /**
@@ -52,6 +52,49 @@ public interface Analysis
      */
     Set<File> getProducts( File sourceFile );
 
+    /**
+     * Returns source files the source file depends on by member reference.
+     * 
+     * Dependencies by inheritance are member references too, so they are included.
+     * Only dependencies on source files of the same compilation are returned.
+     *
+     * @param sourceFile source file
+     *
+     * @return source files the source file depends on by member reference
+     */
+    Set<File> getMemberRefDependencies( File sourceFile );
+
+    /**
+     * Returns source files the source file depends on by inheritance.
+     * 
+     * Only dependencies on source files of the same compilation are returned.
+     * Empty set is returned if the compiler does not track dependencies by inheritance separately.
+     *
+     * @param sourceFile source file
+     *
+     * @return source files the source file depends on by inheritance
+     */
+    Set<File> getInheritanceDependencies( File sourceFile );
+
+    /**
+     * Returns names of classes from other compilations (for example main classes for test sources
+     * or classes of other reactor modules) the source file depends on.
+     *
+     * @param sourceFile source file
+     *
+     * @return fully qualified names of external classes the source file depends on
+     */
+    Set<String> getExternalDependencies( File sourceFile );
+
+    /**
+     * Returns names of classes defined in the source file.
+     *
+     * @param sourceFile source file
+     *
+     * @return fully qualified names of classes defined in the source file
+     */
+    Set<String> getClassNames( File sourceFile );
+
     /**
      * Updates class file time stamp written in incremental compilation analysis
      * to the value returned by {@link File#lastModified()}.
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.api;
+
+/**
+ * Compilation cancellation request checked periodically by the compiler.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public interface CompilationCancellation
+{
+
+    /**
+     * Returns {@code true} if compilation should be stopped.
+     * <br>
+     * <br>
+     * Invoked on compiling thread, should not block.
+     *
+     * @return {@code true} if compilation was cancelled
+     */
+    boolean isCancelled();
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.api;
+
+/**
+ * Permission to start compilation, used to limit concurrently running compilations.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public interface CompilationPermit
+{
+
+    /**
+     * Waits until the compilation can start.
+     * <br>
+     * <br>
+     * Invoked on compiling thread at most once, only if sources will be compiled
+     * (not if compilation is up to date).
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire()
+        throws InterruptedException;
+
+}
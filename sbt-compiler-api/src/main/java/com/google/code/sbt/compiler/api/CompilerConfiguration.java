@@ -106,6 +106,90 @@ public class CompilerConfiguration implements Serializable
      */
     private transient SourcePositionMapper sourcePositionMapper;
 
+    /**
+     * Root directories replaced with tokens in relocatable copy of analysis cache file, keyed by token names.
+     */
+    private Map<String, File> analysisRelocationRoots;
+
+    /**
+     * Use source files content hashes cache for up to date check before incremental compilation.
+     */
+    private boolean sourceHashCache;
+
+    /**
+     * Cache class name indexes of classpath jars.
+     */
+    private boolean classpathIndexCache;
+
+    /**
+     * Scala and Java sources compilation order.
+     */
+    private String compileOrder;
+
+    /**
+     * Listener notified about compilation errors/warnings as they are reported.
+     */
+    private transient CompilationProblemListener problemListener;
+
+    /**
+     * Regular expressions of warning messages not shown.
+     */
+    private List<String> suppressedWarnings;
+
+    /**
+     * Group similar warnings and show only first examples of every group.
+     */
+    private boolean aggregateWarnings;
+
+    /**
+     * Number of shown warnings of every group if warnings are aggregated.
+     */
+    private int warningExamples;
+
+    /**
+     * GZIP compressed file for full list of warnings if warnings are aggregated.
+     */
+    private File warningsFile;
+
+    /**
+     * Report cached warnings of sources not recompiled by incremental compilation.
+     */
+    private boolean replayWarnings;
+
+    /**
+     * Number of errors after which compilation is stopped.
+     */
+    private int failFastErrors;
+
+    /**
+     * Compilation timeout in milliseconds.
+     */
+    private long compileTimeout;
+
+    /**
+     * Compilation cancellation request.
+     */
+    private transient CompilationCancellation cancellation;
+
+    /**
+     * Compilation progress messages interval in milliseconds.
+     */
+    private long progressInterval;
+
+    /**
+     * Only type check sources, do not generate class files.
+     */
+    private boolean typecheckOnly;
+
+    /**
+     * Write incremental compilation invalidation report.
+     */
+    private boolean invalidationReport;
+
+    /**
+     * Compilation start permission.
+     */
+    private transient CompilationPermit compilationPermit;
 
     /**
      * Returns Scala and Java source files encoding.
@@ -421,4 +505,355 @@ public class CompilerConfiguration implements Serializable
         this.sourcePositionMapper = sourcePositionMapper;
     }
 
+
+    /**
+     * Returns root directories replaced with tokens in relocatable copy of analysis cache file.
+     * 
+     * @return relocation root directories keyed by token names or {@code null} if relocatable copy is not required
+     */
+    public Map<String, File> getAnalysisRelocationRoots()
+    {
+        return analysisRelocationRoots;
+    }
+
+    /**
+     * Sets root directories replaced with tokens in relocatable copy of analysis cache file.
+     * 
+     * @param analysisRelocationRoots relocation root directories keyed by token names
+     */
+    public void setAnalysisRelocationRoots( Map<String, File> analysisRelocationRoots )
+    {
+        this.analysisRelocationRoots = analysisRelocationRoots;
+    }
+
+
+
+    /**
+     * Returns whether source files content hashes cache is used for up to date check
+     * before incremental compilation.
+     * 
+     * @return {@code true} if source files content hashes cache is used
+     */
+    public boolean isSourceHashCache()
+    {
+        return sourceHashCache;
+    }
+
+    /**
+     * Sets whether source files content hashes cache is used for up to date check
+     * before incremental compilation.
+     * 
+     * @param sourceHashCache {@code true} if source files content hashes cache should be used
+     */
+    public void setSourceHashCache( boolean sourceHashCache )
+    {
+        this.sourceHashCache = sourceHashCache;
+    }
+
+
+
+    /**
+     * Returns whether class name indexes of classpath jars are cached.
+     * 
+     * @return {@code true} if class name indexes of classpath jars are cached
+     */
+    public boolean isClasspathIndexCache()
+    {
+        return classpathIndexCache;
+    }
+
+    /**
+     * Sets whether class name indexes of classpath jars are cached.
+     * 
+     * @param classpathIndexCache {@code true} if class name indexes of classpath jars should be cached
+     */
+    public void setClasspathIndexCache( boolean classpathIndexCache )
+    {
+        this.classpathIndexCache = classpathIndexCache;
+    }
+
+
+
+    /**
+     * Returns Scala and Java sources compilation order.
+     * 
+     * @return compilation order ({@code mixed}, {@code java-then-scala}, {@code scala-then-java} or {@code auto})
+     */
+    public String getCompileOrder()
+    {
+        return compileOrder;
+    }
+
+    /**
+     * Sets Scala and Java sources compilation order.
+     * 
+     * @param compileOrder compilation order ({@code mixed}, {@code java-then-scala}, {@code scala-then-java}
+     *            or {@code auto})
+     */
+    public void setCompileOrder( String compileOrder )
+    {
+        this.compileOrder = compileOrder;
+    }
+
+    /**
+     * Returns listener notified about compilation errors/warnings as they are reported.
+     * 
+     * @return compilation problem listener or {@code null}
+     */
+    public CompilationProblemListener getProblemListener()
+    {
+        return problemListener;
+    }
+
+    /**
+     * Sets listener notified about compilation errors/warnings as they are reported.
+     * 
+     * @param problemListener compilation problem listener
+     */
+    public void setProblemListener( CompilationProblemListener problemListener )
+    {
+        this.problemListener = problemListener;
+    }
+
+    /**
+     * Returns regular expressions of warning messages not shown.
+     * 
+     * @return suppressed warnings regular expressions
+     */
+    public List<String> getSuppressedWarnings()
+    {
+        return suppressedWarnings;
+    }
+
+    /**
+     * Sets regular expressions of warning messages not shown.
+     * 
+     * @param suppressedWarnings suppressed warnings regular expressions
+     */
+    public void setSuppressedWarnings( List<String> suppressedWarnings )
+    {
+        this.suppressedWarnings = suppressedWarnings;
+    }
+
+    /**
+     * Returns true if similar warnings are grouped and only first examples of every group are shown.
+     * 
+     * @return true if warnings are aggregated
+     */
+    public boolean isAggregateWarnings()
+    {
+        return aggregateWarnings;
+    }
+
+    /**
+     * Sets whether similar warnings are grouped and only first examples of every group are shown.
+     * 
+     * @param aggregateWarnings aggregate warnings
+     */
+    public void setAggregateWarnings( boolean aggregateWarnings )
+    {
+        this.aggregateWarnings = aggregateWarnings;
+    }
+
+    /**
+     * Returns number of shown warnings of every group if warnings are aggregated.
+     * 
+     * @return number of shown warnings of every group
+     */
+    public int getWarningExamples()
+    {
+        return warningExamples;
+    }
+
+    /**
+     * Sets number of shown warnings of every group if warnings are aggregated.
+     * 
+     * @param warningExamples number of shown warnings of every group
+     */
+    public void setWarningExamples( int warningExamples )
+    {
+        this.warningExamples = warningExamples;
+    }
+
+    /**
+     * Returns GZIP compressed file for full list of warnings if warnings are aggregated.
+     * 
+     * @return warnings file
+     */
+    public File getWarningsFile()
+    {
+        return warningsFile;
+    }
+
+    /**
+     * Sets GZIP compressed file for full list of warnings if warnings are aggregated.
+     * 
+     * @param warningsFile warnings file
+     */
+    public void setWarningsFile( File warningsFile )
+    {
+        this.warningsFile = warningsFile;
+    }
+
+    /**
+     * Returns true if cached warnings of sources not recompiled by incremental compilation are reported.
+     * 
+     * @return true if cached warnings are reported
+     */
+    public boolean isReplayWarnings()
+    {
+        return replayWarnings;
+    }
+
+    /**
+     * Sets whether cached warnings of sources not recompiled by incremental compilation are reported.
+     * 
+     * @param replayWarnings report cached warnings
+     */
+    public void setReplayWarnings( boolean replayWarnings )
+    {
+        this.replayWarnings = replayWarnings;
+    }
+
+    /**
+     * Returns number of errors after which compilation is stopped, {@code 0} if compilation is never stopped
+     * because of errors.
+     * 
+     * @return number of errors after which compilation is stopped
+     */
+    public int getFailFastErrors()
+    {
+        return failFastErrors;
+    }
+
+    /**
+     * Sets number of errors after which compilation is stopped.
+     * 
+     * @param failFastErrors number of errors after which compilation is stopped, {@code 0} to disable
+     */
+    public void setFailFastErrors( int failFastErrors )
+    {
+        this.failFastErrors = failFastErrors;
+    }
+
+    /**
+     * Returns compilation timeout in milliseconds, {@code 0} if there is no timeout.
+     * 
+     * @return compilation timeout in milliseconds
+     */
+    public long getCompileTimeout()
+    {
+        return compileTimeout;
+    }
+
+    /**
+     * Sets compilation timeout in milliseconds.
+     * 
+     * @param compileTimeout compilation timeout in milliseconds, {@code 0} for no timeout
+     */
+    public void setCompileTimeout( long compileTimeout )
+    {
+        this.compileTimeout = compileTimeout;
+    }
+
+    /**
+     * Returns compilation cancellation request.
+     * 
+     * @return compilation cancellation request, may be {@code null}
+     */
+    public CompilationCancellation getCancellation()
+    {
+        return cancellation;
+    }
+
+    /**
+     * Sets compilation cancellation request.
+     * 
+     * @param cancellation compilation cancellation request
+     */
+    public void setCancellation( CompilationCancellation cancellation )
+    {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Returns compilation progress messages interval in milliseconds, {@code 0} if progress is not reported.
+     * 
+     * @return compilation progress messages interval in milliseconds
+     */
+    public long getProgressInterval()
+    {
+        return progressInterval;
+    }
+
+    /**
+     * Sets compilation progress messages interval in milliseconds.
+     * 
+     * @param progressInterval compilation progress messages interval in milliseconds, {@code 0} to disable
+     */
+    public void setProgressInterval( long progressInterval )
+    {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Returns true if sources are only type checked and class files are not generated.
+     * 
+     * @return true if sources are only type checked
+     */
+    public boolean isTypecheckOnly()
+    {
+        return typecheckOnly;
+    }
+
+    /**
+     * Sets whether sources are only type checked and class files are not generated.
+     * 
+     * @param typecheckOnly only type check sources
+     */
+    public void setTypecheckOnly( boolean typecheckOnly )
+    {
+        this.typecheckOnly = typecheckOnly;
+    }
+
+    /**
+     * Returns true if incremental compilation invalidation report is written.
+     * 
+     * @return true if invalidation report is written
+     */
+    public boolean isInvalidationReport()
+    {
+        return invalidationReport;
+    }
+
+    /**
+     * Sets whether incremental compilation invalidation report is written.
+     * 
+     * @param invalidationReport write invalidation report
+     */
+    public void setInvalidationReport( boolean invalidationReport )
+    {
+        this.invalidationReport = invalidationReport;
+    }
+
+    /**
+     * Returns compilation start permission.
+     * 
+     * @return compilation start permission, may be {@code null}
+     */
+    public CompilationPermit getCompilationPermit()
+    {
+        return compilationPermit;
+    }
+
+    /**
+     * Sets compilation start permission.
+     * 
+     * @param compilationPermit compilation start permission
+     */
+    public void setCompilationPermit( CompilationPermit compilationPermit )
+    {
+        this.compilationPermit = compilationPermit;
+    }
+
 }
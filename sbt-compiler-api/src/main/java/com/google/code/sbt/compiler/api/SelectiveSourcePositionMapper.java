@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.api;
+
+import java.util.Collection;
+
+/**
+ * {@link SourcePositionMapper} declaring names of generated files it supports.
+ * <br>
+ * <br>
+ * Positions in files with other names are not passed to {@link #map(SourcePosition)} method
+ * of this mapper.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public interface SelectiveSourcePositionMapper
+    extends SourcePositionMapper
+{
+
+    /**
+     * Returns file name suffixes of generated files supported by this mapper,
+     * for example {@code ".template.scala"} or {@code "routes_routing.scala"}.
+     * 
+     * @return supported generated file name suffixes
+     */
+    Collection<String> getSupportedFileNameSuffixes();
+
+}
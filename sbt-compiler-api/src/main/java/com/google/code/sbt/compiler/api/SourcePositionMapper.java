@@ -21,6 +21,10 @@ import java.io.IOException;
 
 /**
  * Mapper converting positions in generated source files to positions in original sources they were generated from.
+ * <br>
+ * <br>
+ * Implementations should read source files using shared {@link SourceTextCache#getDefault()} cache,
+ * so every file is read once even if it contains many compilation errors/warnings.
  * 
  * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
  */
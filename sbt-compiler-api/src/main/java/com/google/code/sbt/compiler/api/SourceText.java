@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.api;
+
+import java.util.Arrays;
+
+/**
+ * Decoded source file text with line offsets table.
+ * <br>
+ * <br>
+ * Lines are numbered from 1, columns and offsets from 0. {@code \n}, {@code \r\n} and {@code \r}
+ * line terminators are recognized.
+ * 
+ * @see SourceTextCache
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SourceText
+{
+    private final String text;
+
+    private final int[] lineStarts;
+
+    /**
+     * Creates source text.
+     * 
+     * @param text decoded source file text
+     */
+    public SourceText( String text )
+    {
+        this.text = text;
+
+        int[] starts = new int[64];
+        int count = 0;
+        starts[count++] = 0;
+        int length = text.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            char c = text.charAt( i );
+            if ( c == '\n' || ( c == '\r' && ( i + 1 == length || text.charAt( i + 1 ) != '\n' ) ) )
+            {
+                if ( count == starts.length )
+                {
+                    starts = Arrays.copyOf( starts, count * 2 );
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = Arrays.copyOf( starts, count );
+    }
+
+    /**
+     * Returns decoded source file text.
+     * 
+     * @return source file text
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Returns number of lines.
+     * 
+     * @return number of lines
+     */
+    public int getLineCount()
+    {
+        return lineStarts.length;
+    }
+
+    /**
+     * Returns number of the line containing given offset.
+     * 
+     * @param offset character offset
+     * @return line number or {@code -1} if the offset is outside of the text
+     */
+    public int getLineNumber( int offset )
+    {
+        if ( offset < 0 || offset > text.length() )
+        {
+            return -1;
+        }
+        int index = Arrays.binarySearch( lineStarts, offset );
+        return ( index >= 0 ? index : -index - 2 ) + 1;
+    }
+
+    /**
+     * Returns column of given offset in its line.
+     * 
+     * @param offset character offset
+     * @return column or {@code -1} if the offset is outside of the text
+     */
+    public int getColumn( int offset )
+    {
+        int line = getLineNumber( offset );
+        return line > 0 ? offset - lineStarts[line - 1] : -1;
+    }
+
+    /**
+     * Returns offset of given column in given line.
+     * 
+     * @param line line number
+     * @param column column
+     * @return character offset or {@code -1} if the line does not exist
+     */
+    public int getOffset( int line, int column )
+    {
+        return line > 0 && line <= lineStarts.length ? lineStarts[line - 1] + column : -1;
+    }
+
+    /**
+     * Returns content of given line without line terminator.
+     * 
+     * @param line line number
+     * @return line content or {@code null} if the line does not exist
+     */
+    public String getLineContent( int line )
+    {
+        if ( line <= 0 || line > lineStarts.length )
+        {
+            return null;
+        }
+        int start = lineStarts[line - 1];
+        int end = line < lineStarts.length ? lineStarts[line] : text.length();
+        while ( end > start && ( text.charAt( end - 1 ) == '\n' || text.charAt( end - 1 ) == '\r' ) )
+        {
+            end--;
+        }
+        return text.substring( start, end );
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.api;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache of decoded source file texts with line offset tables.
+ * <br>
+ * <br>
+ * Source position mappers read generated and original source files for every mapped position.
+ * With this cache every file is read and decoded once, as long as it is not modified.
+ * Least recently used entries are removed when the total number of cached characters exceeds the limit.
+ * <br>
+ * This class is thread safe.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SourceTextCache
+{
+    /**
+     * Default maximum number of cached characters.
+     */
+    public static final long DEFAULT_MAX_SIZE = 16L * 1024L * 1024L;
+
+    private static final SourceTextCache DEFAULT = new SourceTextCache( DEFAULT_MAX_SIZE );
+
+    private final long maxSize;
+
+    private long size;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+    /**
+     * Creates source text cache.
+     * 
+     * @param maxSize maximum number of cached characters
+     */
+    public SourceTextCache( long maxSize )
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns shared source text cache instance.
+     * 
+     * @return shared source text cache
+     */
+    public static SourceTextCache getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns decoded text of a source file. File is read if it is not cached or was modified.
+     * 
+     * @param file source file
+     * @param charsetName source file character set name, platform default character set is used if {@code null}
+     * @return source text
+     * @throws IOException if an I/O error occurs
+     */
+    public SourceText get( File file, String charsetName )
+        throws IOException
+    {
+        String key = charsetName + ':' + file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized ( this )
+        {
+            Entry entry = entries.get( key );
+            if ( entry != null && entry.length == length && entry.lastModified == lastModified )
+            {
+                return entry.text;
+            }
+        }
+
+        SourceText text = new SourceText( read( file, charsetName ) );
+        synchronized ( this )
+        {
+            Entry previous = entries.put( key, new Entry( length, lastModified, text ) );
+            if ( previous != null )
+            {
+                size -= previous.text.getText().length();
+            }
+            size += text.getText().length();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while ( size > maxSize && entries.size() > 1 )
+            {
+                size -= iterator.next().getValue().text.getText().length();
+                iterator.remove();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Removes all cached texts.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        size = 0L;
+    }
+
+    private static String read( File file, String charsetName )
+        throws IOException
+    {
+        StringBuilder result = new StringBuilder( (int) Math.min( file.length(), Integer.MAX_VALUE ) );
+        FileInputStream is = new FileInputStream( file );
+        try
+        {
+            Reader reader = charsetName != null ? new InputStreamReader( is, charsetName ) : new InputStreamReader( is );
+            char[] buf = new char[8192];
+            int n = reader.read( buf );
+            while ( n != -1 )
+            {
+                result.append( buf, 0, n );
+                n = reader.read( buf );
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+        return result.toString();
+    }
+
+    private static class Entry
+    {
+        private final long length;
+
+        private final long lastModified;
+
+        private final SourceText text;
+
+        Entry( long length, long lastModified, SourceText text )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.text = text;
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
@@ -33,27 +34,22 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.factory.ArtifactFactory;
-import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
-import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionException;
-import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
-import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
 
 import org.codehaus.plexus.util.DirectoryScanner;
 
+import com.google.code.sbt.compiler.api.Analysis;
 import com.google.code.sbt.compiler.api.Compiler;
 import com.google.code.sbt.compiler.api.CompilerConfiguration;
 import com.google.code.sbt.compiler.api.CompilerException;
+import com.google.code.sbt.compiler.api.CompilerLogger;
 import com.google.code.sbt.compiler.api.Compilers;
 import com.google.code.sbt.compiler.api.SourcePositionMapper;
 
@@ -63,7 +59,7 @@ import com.google.code.sbt.compiler.api.SourcePositionMapper;
  * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
  */
 public abstract class AbstractSBTCompileMojo
-    extends AbstractMojo
+    extends AbstractSBTMojo
 {
     /**
      * Scala artifacts "groupId".
@@ -113,45 +109,6 @@ public abstract class AbstractSBTCompileMojo
     @Parameter( property = "scala.version" )
     protected String scalaVersion;
 
-    /**
-     * Forced SBT version.<br>
-     * <br>
-     * Used to automatically select one of the "well known" SBT compilers if no compiler added explicitly as plugin's dependency.
-     * There are three cases possible:
-     * <ul>
-     * <li>
-     * If {@link #sbtVersion} is specified, compatible {@link Compiler} implementation
-     * is selected and configured to use {@link #sbtVersion} SBT version for compilation.
-     * </li>
-     * <li>
-     * If {@link #sbtVersion} is not specified, and {@link #playVersion} is specified
-     * {@link #playVersion} parameter value is used to indirectly select compatible {@link Compiler} implementation
-     * and it's {@link Compiler#getDefaultSbtVersion()} SBT version used for compilation.
-     * </li>
-     * <li>
-     * If both {@link #sbtVersion} and {@link #playVersion} are not specified
-     * the most recent {@link Compiler} implementation is selected
-     * and it's {@link Compiler#getDefaultSbtVersion()} SBT version used for compilation.
-     * </li>
-     * </ul>
-     * 
-     * @since 1.0.0
-     */
-    @Parameter( property = "sbt.version" )
-    protected String sbtVersion;
-
-    /**
-     * Forced Play&#33; Framework version.
-     * <br>
-     * <br>
-     * Used to select SBT version in Play&#33; Framework projects based on framework version used.
-     * See {@link #sbtVersion} for more details.
-     * 
-     * @since 1.0.0
-     */
-    @Parameter( property = "play2.version" )
-    protected String playVersion;
-
     /**
      * Scala and Java source files encoding.
      * <br>
@@ -236,89 +193,229 @@ public abstract class AbstractSBTCompileMojo
     protected String _sourcePositionMappers;
 
     /**
-     * Maven project to interact with.
+     * Write relocatable copy of incremental compilation analysis cache file.
+     * <br>
+     * <br>
+     * In relocatable copy absolute paths of project base directory, local repository and Java home directory
+     * are replaced with {@code ${basedir}}, {@code ${localRepository}} and {@code ${java.home}} tokens.
+     * If analysis cache file does not exist or was created in a different location
+     * (for example build directory restored from CI cache in a different workspace),
+     * it is recreated from its relocatable copy, so the compilation stays incremental.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( defaultValue = "${project}", readonly = true, required = true )
-    protected MavenProject project;
+    @Parameter( property = "sbt.relocatableAnalysis", defaultValue = "false" )
+    protected boolean relocatableAnalysis;
 
     /**
-     * All Maven projects in the reactor.
+     * Check if compilation is up to date using cached content hashes of source files.
+     * <br>
+     * <br>
+     * Source file hashes are computed in parallel and cached by file path, size and modification time,
+     * so unchanged files are not read again. If source file contents, classpath, compiler options
+     * and compilation products did not change since last successful compilation,
+     * incremental compiler is not started at all.
+     * Touched, but not modified files (e.g. after {@code git checkout} or regenerated managed sources)
+     * are rehashed only.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( defaultValue = "${reactorProjects}", required = true, readonly = true )
-    protected List<MavenProject> reactorProjects;
+    @Parameter( property = "sbt.sourceHashCache", defaultValue = "false" )
+    protected boolean sourceHashCache;
 
     /**
-     * Artifact factory used to look up artifacts in the remote repository.
+     * Cache class name indexes of classpath jars.
+     * <br>
+     * <br>
+     * Incremental compiler opens classpath jars to find classes the sources depend on.
+     * If enabled, class name indexes of classpath jars are cached in memory (for all modules built
+     * in the same Maven execution) and on disk (in Zinc cache directory, for subsequent builds),
+     * so only new or modified jars are opened.
+     * 
+     * @since 1.0.1
      */
-    @Component
-    protected ArtifactFactory factory;
+    @Parameter( property = "sbt.classpathIndexCache", defaultValue = "false" )
+    protected boolean classpathIndexCache;
 
     /**
-     * Artifact resolver used to resolve artifacts.
+     * Scala and Java sources compilation order.
+     * <br>
+     * <br>
+     * Possible values:
+     * <ul>
+     * <li>{@code mixed} - Scala compiler parses Java sources, then Java compiler compiles them,</li>
+     * <li>{@code java-then-scala} - Java sources are compiled first, they cannot depend on Scala sources,</li>
+     * <li>{@code scala-then-java} - Scala sources are compiled first, they cannot depend on Java sources,</li>
+     * <li>{@code auto} - Java only sources are compiled without Scala compiler, for mixed sources the order
+     * is selected based on source dependencies recorded during previous compilation;
+     * if compilation with selected order fails, it is repeated with {@code mixed} order.</li>
+     * </ul>
+     * Compile order change causes full recompilation.
+     * 
+     * @since 1.0.1
      */
-    @Component
-    protected ArtifactResolver resolver;
+    @Parameter( property = "sbt.compileOrder", defaultValue = "mixed" )
+    protected String compileOrder;
 
     /**
-     * Location of the local repository.
+     * Buffer compiler log messages and write them in a background thread.
+     * <br>
+     * <br>
+     * Compiler messages are handed to a bounded buffer drained by a background thread and written
+     * in blocks of up to 1024 messages, so the compiling thread does not wait for console output
+     * and output of modules compiled in parallel ({@code -T} option) is not interleaved within a block.
+     * Time the compiling thread spent blocked on logging is logged in debug level.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( property = "localRepository", readonly = true, required = true )
-    protected ArtifactRepository localRepo;
+    @Parameter( property = "sbt.bufferedLogging", defaultValue = "false" )
+    protected boolean bufferedLogging;
 
     /**
-     * Remote repositories used by the resolver
+     * Regular expressions of compiler warning messages not shown.
+     * <br>
+     * <br>
+     * Warning is not shown if any part of its message matches any of the regular expressions.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( property = "project.remoteArtifactRepositories", readonly = true, required = true )
-    protected List<ArtifactRepository> remoteRepos;
+    @Parameter
+    protected List<String> suppressedWarnings;
 
     /**
-     * For retrieval of artifact's metadata.
+     * Group similar compiler warnings and show only first examples of every group.
+     * <br>
+     * <br>
+     * Warnings are grouped by category ({@code deprecation}, {@code unchecked}, {@code feature}
+     * or Java compiler lint category) and message with names, quoted texts and numbers omitted.
+     * For every group only {@code warningExamples} warnings are shown, for larger groups warning
+     * counts are shown after compilation. The full list of warnings is written to GZIP compressed
+     * {@code <analysis cache file>-warnings.txt.gz} file.
+     * 
+     * @since 1.0.1
      */
-    @Component
-    protected ArtifactMetadataSource metadataSource;
+    @Parameter( property = "sbt.aggregateWarnings", defaultValue = "false" )
+    protected boolean aggregateWarnings;
 
     /**
-     * Plugin's groupId used for well known providers resolution
+     * Number of shown warnings of every group if {@code aggregateWarnings} is enabled.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( property = "plugin.groupId", readonly = true, required = true )
-    private String pluginGroupId;
+    @Parameter( property = "sbt.warningExamples", defaultValue = "3" )
+    protected int warningExamples;
 
     /**
-     * Plugin's version used for well known providers resolution
+     * Report warnings of sources not recompiled by incremental compilation.
+     * <br>
+     * <br>
+     * Warnings reported for every source file are cached next to the incremental compilation analysis
+     * cache file. After incremental compilation cached warnings of sources not recompiled are reported again,
+     * so all warnings are visible without full recompilation.
+     * 
+     * @since 1.0.1
      */
-    @Parameter( property = "plugin.version", readonly = true, required = true )
-    private String pluginVersion;
+    @Parameter( property = "sbt.replayWarnings", defaultValue = "false" )
+    protected boolean replayWarnings;
 
     /**
-     * Map of compiler implementations. For now only zero or one allowed.
+     * Stop compilation after this number of errors.
+     * <br>
+     * <br>
+     * Scala compiler is cancelled when it advances to the next compilation unit or phase
+     * after the number of reported errors reached this value. {@code 0} disables this check
+     * (compilation is not stopped before all sources are processed).
+     * 
+     * @since 1.0.1
      */
-    @Component( role = Compiler.class )
-    private Map<String, Compiler> compilers;
+    @Parameter( property = "sbt.failFastErrors", defaultValue = "0" )
+    protected int failFastErrors;
 
     /**
-     * Performs compilation.
+     * Compilation timeout in seconds.
+     * <br>
+     * <br>
+     * Scala compiler is cancelled and the build fails if compilation does not finish in this time.
+     * {@code 0} means no timeout.
      * 
-     * @throws MojoExecutionException if unexpected problem occurs
-     * @throws MojoFailureException if expected problem (such as compilation failure) occurs
+     * @since 1.0.1
      */
-    @Override
-    public void execute()
-        throws MojoExecutionException, MojoFailureException
-    {
-        if ( !"pom".equals( project.getPackaging() ) )
-        {
-            long ts = System.currentTimeMillis();
-            try
-            {
-                internalExecute();
-            }
-            finally
-            {
-                long te = System.currentTimeMillis();
-                getLog().debug( String.format( "Mojo execution time: %d ms", te - ts ) );
-            }
-        }
-    }
+    @Parameter( property = "sbt.compileTimeout", defaultValue = "0" )
+    protected int compileTimeout;
+
+    /**
+     * Cancel compilation when compilation of another module fails.
+     * <br>
+     * <br>
+     * In parallel builds, when compilation of a module fails, compilations of other modules
+     * running at the same time are cancelled, so the build fails quickly.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.cancelOnFailure", defaultValue = "false" )
+    protected boolean cancelOnFailure;
+
+    /**
+     * Compilation progress messages interval in seconds.
+     * <br>
+     * <br>
+     * During long Scala compilation current phase, number of processed compilation units, elapsed time
+     * and estimated remaining time are logged every {@code progressInterval} seconds.
+     * Remaining time is estimated from timings of previous compilations of the module.
+     * {@code 0} disables progress messages.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.progressInterval", defaultValue = "10" )
+    protected int progressInterval;
+
+    /**
+     * Maximum number of compilations running concurrently in one JVM.
+     * <br>
+     * <br>
+     * In parallel builds every running Scala compilation uses one processor core.
+     * Compilations exceeding this budget wait for other compilations to finish.
+     * {@code 0} means no limit.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.compileCores", defaultValue = "0" )
+    protected int compileCores;
+
+    /**
+     * Maximum heap memory in megabytes used by compilations running concurrently in one JVM.
+     * <br>
+     * <br>
+     * Heap memory needed by a compilation is estimated from the number of sources and from peak heap usage
+     * during previous compilation of most sources of the module. Compilations exceeding this budget wait
+     * for other compilations to finish. A compilation always starts if no other compilation is running.
+     * {@code 0} means no limit.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.compileHeapBudget", defaultValue = "0" )
+    protected int compileHeapBudget;
+
+    /**
+     * Write incremental compilation invalidation report.
+     * <br>
+     * <br>
+     * For every recompiled source the report explains why it was recompiled and in which incremental
+     * compilation cycle: source modification, changed classpath entries or classes of other modules,
+     * API changes with modified names and dependencies by inheritance or member reference.
+     * The report is written in JSON format and as a text summary next to the analysis cache file.
+     * Supported by SBT 0.13.x compiler only.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.invalidationReport", defaultValue = "false" )
+    protected boolean invalidationReport;
+
+    /**
+     * Map of compiler implementations. For now only zero or one allowed.
+     */
+    @Component( role = Compiler.class )
+    private Map<String, Compiler> compilers;
 
     /**
      * Performs compilation.
@@ -326,6 +423,7 @@ public abstract class AbstractSBTCompileMojo
      * @throws MojoExecutionException if unexpected problem occurs
      * @throws MojoFailureException if expected problem (such as compilation failure) occurs
      */
+    @Override
     protected void internalExecute()
         throws MojoExecutionException, MojoFailureException
     {
@@ -411,43 +509,22 @@ public abstract class AbstractSBTCompileMojo
                 resolvedScalacOptions = resolvedScalacOptions + ' ' + _scalacOptions;
             }
 
-            if ( ( scalacPlugins != null && scalacPlugins.trim().length() > 0 )
-                || ( _scalacPlugins != null && _scalacPlugins.trim().length() > 0 ) )
+            String scalacPluginOptions = getScalacPluginOptions();
+            if ( scalacPluginOptions.length() > 0 )
             {
-                List<Artifact> resolvedScalaCompilerPluginArtifacts = new ArrayList<Artifact>();
-                resolveArtifacts( resolvedScalaCompilerPluginArtifacts, scalacPlugins );
-                resolveArtifacts( resolvedScalaCompilerPluginArtifacts, _scalacPlugins );
-                for ( Artifact artifact: resolvedScalaCompilerPluginArtifacts )
-                {
-                    String arg = "-Xplugin:" + artifact.getFile().getAbsolutePath();
-                    if ( arg.indexOf( ' ' ) >= 0 )
-                    {
-                        arg = '\"' + arg + '\"';
-                    }
-                    resolvedScalacOptions = resolvedScalacOptions + ' ' + arg;
-                }
+                resolvedScalacOptions = resolvedScalacOptions + ' ' + scalacPluginOptions;
             }
 
-            SourcePositionMapper sourcePositionMapper = null;
+            SourcePositionMapperCollection sourcePositionMapper = null;
             if ( sbtCompiler.supportsSourcePositionMappers() )
             {
                 if ( ( sourcePositionMappers != null && sourcePositionMappers.trim().length() > 0 )
                     || ( _sourcePositionMappers != null && _sourcePositionMappers.trim().length() > 0 ) )
                 {
-                    List<Artifact> resolvedSourcePositionMapperArtifacts = new ArrayList<Artifact>();
-                    resolveArtifacts( resolvedSourcePositionMapperArtifacts, sourcePositionMappers );
-                    resolveArtifacts( resolvedSourcePositionMapperArtifacts, _sourcePositionMappers );
-                    if ( !resolvedSourcePositionMapperArtifacts.isEmpty() )
+                    List<SourcePositionMapper> resolvedSourcePositionMappers = getSourcePositionMappers();
+                    if ( resolvedSourcePositionMappers != null )
                     {
-                        Set<Artifact> resolvedSourcePositionMapperArtifactSet =
-                            getAllDependencies( new HashSet<Artifact>( resolvedSourcePositionMapperArtifacts ), null /* filter */ );
-                        List<SourcePositionMapper> resolvedSourcePositionMappers =
-                            resolveSourcePositionMappers( resolvedSourcePositionMapperArtifactSet );
-                        if ( resolvedSourcePositionMappers != null )
-                        {
-                            sourcePositionMapper = new SourcePositionMapperCollection( resolvedSourcePositionMappers );
-                            sourcePositionMapper.setCharsetName( sourceEncoding );
-                        }
+                        sourcePositionMapper = new SourcePositionMapperCollection( resolvedSourcePositionMappers );
                     }
                 }
             }
@@ -460,7 +537,15 @@ public abstract class AbstractSBTCompileMojo
             configuration.setXsbtiFile( xsbtiArtifact.getFile() );
             configuration.setCompilerInterfaceSrcFile( compilerInterfaceSrc.getFile() );
             configuration.setClasspathFiles( classpathFiles );
-            configuration.setLogger( new MavenCompilerLogger( getLog() ) );
+            CompilerLogger compilerLogger = new MavenCompilerLogger( getLog() );
+            BufferedCompilerLogger bufferedCompilerLogger = null;
+            if ( bufferedLogging )
+            {
+                bufferedCompilerLogger =
+                    new BufferedCompilerLogger( compilerLogger, BufferedCompilerLogger.DEFAULT_CAPACITY );
+                compilerLogger = bufferedCompilerLogger;
+            }
+            configuration.setLogger( compilerLogger );
             configuration.setOutputDirectory( getOutputDirectory() );
             configuration.setSourceEncoding( sourceEncoding );
             configuration.setJavacOptions( javacOptions );
@@ -468,8 +553,75 @@ public abstract class AbstractSBTCompileMojo
             configuration.setAnalysisCacheFile( getAnalysisCacheFile() );
             configuration.setAnalysisCacheMap( getAnalysisCacheMap() );
             configuration.setSourcePositionMapper( sourcePositionMapper );
+            configuration.setSourceHashCache( sourceHashCache );
+            configuration.setClasspathIndexCache( classpathIndexCache );
+            configuration.setCompileOrder( compileOrder );
+            configuration.setSuppressedWarnings( suppressedWarnings );
+            configuration.setReplayWarnings( replayWarnings );
+            if ( aggregateWarnings )
+            {
+                File analysisCacheFile = getAnalysisCacheFile();
+                configuration.setAggregateWarnings( true );
+                configuration.setWarningExamples( warningExamples );
+                configuration.setWarningsFile( new File( analysisCacheFile.getParentFile(),
+                                                         analysisCacheFile.getName() + "-warnings.txt.gz" ) );
+            }
+            if ( relocatableAnalysis )
+            {
+                configuration.setAnalysisRelocationRoots( getAnalysisRelocationRoots() );
+            }
+            configuration.setFailFastErrors( failFastErrors );
+            configuration.setCompileTimeout( compileTimeout * 1000L );
+            configuration.setProgressInterval( progressInterval * 1000L );
+            configuration.setTypecheckOnly( isTypecheckOnly() );
+            configuration.setInvalidationReport( invalidationReport );
+            CompilationGovernor governor = null;
+            if ( compileCores > 0 || compileHeapBudget > 0 )
+            {
+                File analysisCacheFile = getAnalysisCacheFile();
+                governor =
+                    new CompilationGovernor( compileCores, compileHeapBudget * 1024L * 1024L,
+                                             new File( analysisCacheFile.getParentFile(),
+                                                       analysisCacheFile.getName() + ".heap" ),
+                                             sourceFiles.size(), getLog() );
+                configuration.setCompilationPermit( governor );
+            }
 
-            sbtCompiler.performCompile( configuration );
+            ReactorCompilationCancellation cancellation = null;
+            if ( cancelOnFailure )
+            {
+                cancellation = new ReactorCompilationCancellation();
+                configuration.setCancellation( cancellation );
+                cancellation.start();
+            }
+
+            Analysis analysis = null;
+            try
+            {
+                analysis = sbtCompiler.performCompile( configuration );
+            }
+            finally
+            {
+                if ( governor != null )
+                {
+                    governor.release( analysis );
+                }
+                if ( cancellation != null )
+                {
+                    cancellation.finish( analysis == null );
+                }
+                if ( bufferedCompilerLogger != null )
+                {
+                    bufferedCompilerLogger.close();
+                    getLog().debug( String.format( "Compilation blocked on logging for %d ms",
+                                                   bufferedCompilerLogger.getBlockedTime() ) );
+                }
+                if ( sourcePositionMapper != null )
+                {
+                    sourcePositionMapper.logStatistics( getLog() );
+                }
+            }
+            processAnalysis( analysis );
         }
         catch ( CompilerException e )
         {
@@ -489,6 +641,30 @@ public abstract class AbstractSBTCompileMojo
         }
     }
 
+    /**
+     * Processes incremental compilation analysis after successful compilation.
+     * <br>
+     * <br>
+     * Does nothing by default.
+     * 
+     * @param analysis incremental compilation analysis
+     * @throws MojoExecutionException if unexpected problem occurs
+     */
+    protected void processAnalysis( Analysis analysis )
+        throws MojoExecutionException
+    {
+    }
+
+    /**
+     * Returns resolved dependency artifacts of the project, used for Scala version detection.
+     * 
+     * @return resolved dependency artifacts
+     */
+    protected Collection<?> getProjectArtifacts()
+    {
+        return project.getArtifacts();
+    }
+
     /**
      * Returns compilation classpath elements.
      * 
@@ -538,6 +714,16 @@ public abstract class AbstractSBTCompileMojo
      */
     protected abstract Map<File, File> getAnalysisCacheMap();
 
+    /**
+     * Returns {@code true} if sources should be only type checked, without generating class files.
+     * 
+     * @return {@code true} if sources should be only type checked
+     */
+    protected boolean isTypecheckOnly()
+    {
+        return false;
+    }
+
     private Artifact getDependencyArtifact( Collection<?> classPathArtifacts, String groupId, String artifactId,
                                               String type )
     {
@@ -602,7 +788,7 @@ public abstract class AbstractSBTCompileMojo
         if ( result == null || result.length() == 0 )
         {
             Artifact scalaLibraryArtifact =
-                getDependencyArtifact( project.getArtifacts(), SCALA_GROUPID, SCALA_LIBRARY_ARTIFACTID, "jar" );
+                getDependencyArtifact( getProjectArtifacts(), SCALA_GROUPID, SCALA_LIBRARY_ARTIFACTID, "jar" );
             if ( scalaLibraryArtifact != null )
             {
                 result = scalaLibraryArtifact.getVersion();
@@ -615,38 +801,15 @@ public abstract class AbstractSBTCompileMojo
         return result;
     }
 
-    /**
-     * Returns SBT incremental main compilation analysis cache file location for a project.
-     * 
-     * @param p Maven project
-     * @return analysis cache file location
-     */
-    protected File defaultAnalysisCacheFile( MavenProject p )
-    {
-        File classesDirectory = new File( p.getBuild().getOutputDirectory() );
-        return new File( Compilers.getCacheDirectory( classesDirectory ), "compile" );
-    }
-
-    /**
-     * Returns SBT incremental test compilation analysis cache file location for a project.
-     * 
-     * @param p Maven project
-     * @return analysis cache file location
-     */
-    protected File defaultTestAnalysisCacheFile( MavenProject p )
-    {
-        File testClassesDirectory = new File( p.getBuild().getTestOutputDirectory() );
-        return new File( Compilers.getCacheDirectory( testClassesDirectory ), "test-compile" );
-    }
-
     // Private utility methods
 
-    private Artifact getResolvedArtifact( String groupId, String artifactId, String version )
-        throws ArtifactNotFoundException, ArtifactResolutionException
+    private Map<String, File> getAnalysisRelocationRoots()
     {
-        Artifact artifact = factory.createArtifact( groupId, artifactId, version, Artifact.SCOPE_RUNTIME, "jar" );
-        resolver.resolve( artifact, remoteRepos, localRepo );
-        return artifact;
+        Map<String, File> result = new LinkedHashMap<String, File>( 3 );
+        result.put( "basedir", project.getBasedir() );
+        result.put( "localRepository", new File( localRepo.getBasedir() ) );
+        result.put( "java.home", new File( System.getProperty( "java.home" ) ) );
+        return result;
     }
 
     private Artifact getResolvedArtifact( String groupId, String artifactId, String version, String classifier )
@@ -675,33 +838,99 @@ public abstract class AbstractSBTCompileMojo
         return d;
     }
 
-    private Set<Artifact> getAllDependencies( Artifact artifact, ArtifactFilter filter )
-        throws ArtifactNotFoundException, ArtifactResolutionException
-    {
-        return getAllDependencies( Collections.singleton( artifact ), filter );
-    }
+    // Cached scalac plugin options and source position mappers
+
+    private static final ConcurrentHashMap<String, String> cachedScalacPluginOptions =
+        new ConcurrentHashMap<String, String>( 2 );
+
+    private static final ConcurrentHashMap<String, List<SourcePositionMapper>> cachedSourcePositionMappers =
+        new ConcurrentHashMap<String, List<SourcePositionMapper>>( 2 );
 
-    private Set<Artifact> getAllDependencies( Set<Artifact> artifacts, ArtifactFilter filter )
+    // "-Xplugin:<path>" options for configured scalac plugins, cached by plugin GAVs
+    private String getScalacPluginOptions()
         throws ArtifactNotFoundException, ArtifactResolutionException
     {
-        Artifact originatingArtifact = factory.createBuildArtifact( "dummy", "dummy", "1.0", "jar" );
-        ArtifactResolutionResult resolutionResult =
-            resolver.resolveTransitively( artifacts, originatingArtifact, localRepo,
-                                          remoteRepos, metadataSource, filter );
-        return resolutionResult.getArtifacts();
+        String gavs = normalizeGAVs( scalacPlugins ) + ' ' + normalizeGAVs( _scalacPlugins );
+        if ( gavs.trim().length() == 0 )
+        {
+            return "";
+        }
+        String result = cachedScalacPluginOptions.get( gavs );
+        if ( result == null )
+        {
+            List<Artifact> resolvedScalaCompilerPluginArtifacts = new ArrayList<Artifact>();
+            resolveArtifacts( resolvedScalaCompilerPluginArtifacts, scalacPlugins );
+            resolveArtifacts( resolvedScalaCompilerPluginArtifacts, _scalacPlugins );
+            StringBuilder sb = new StringBuilder();
+            for ( Artifact artifact: resolvedScalaCompilerPluginArtifacts )
+            {
+                String arg = "-Xplugin:" + artifact.getFile().getAbsolutePath();
+                if ( arg.indexOf( ' ' ) >= 0 )
+                {
+                    arg = '\"' + arg + '\"';
+                }
+                if ( sb.length() > 0 )
+                {
+                    sb.append( ' ' );
+                }
+                sb.append( arg );
+            }
+            result = sb.toString();
+            cachedScalacPluginOptions.put( gavs, result );
+        }
+        else
+        {
+            getLog().debug( String.format( "Using cached scalac plugin options for \"%s\".", gavs.trim() ) );
+        }
+        return result;
     }
 
-    // Cached classloaders
-    private static final ConcurrentHashMap<String, ClassLoader> cachedClassLoaders = new ConcurrentHashMap<String, ClassLoader>( 2 );
-
-    private static ClassLoader getCachedClassLoader( String compilerId )
+    // source position mappers with charset set, cached by mapper GAVs and charset
+    private List<SourcePositionMapper> getSourcePositionMappers()
+        throws ArtifactNotFoundException, ArtifactResolutionException, MalformedURLException
     {
-        return cachedClassLoaders.get( compilerId );
+        String key = normalizeGAVs( sourcePositionMappers ) + ' ' + normalizeGAVs( _sourcePositionMappers ) + '|'
+            + sourceEncoding;
+        List<SourcePositionMapper> result = cachedSourcePositionMappers.get( key );
+        if ( result != null )
+        {
+            if ( result.isEmpty() )
+            {
+                return null;
+            }
+            ClassLoader mappersClassLoader = result.get( 0 ).getClass().getClassLoader();
+            if ( mappersClassLoader.getParent() == Thread.currentThread().getContextClassLoader() )
+            {
+                getLog().debug( "Using cached source position mappers." );
+                return result;
+            }
+            getLog().debug( "Invalidated cached source position mappers. Parent classloader changed." );
+        }
+
+        List<Artifact> resolvedSourcePositionMapperArtifacts = new ArrayList<Artifact>();
+        resolveArtifacts( resolvedSourcePositionMapperArtifacts, sourcePositionMappers );
+        resolveArtifacts( resolvedSourcePositionMapperArtifacts, _sourcePositionMappers );
+        result = null;
+        if ( !resolvedSourcePositionMapperArtifacts.isEmpty() )
+        {
+            Set<Artifact> resolvedSourcePositionMapperArtifactSet =
+                getAllDependencies( new HashSet<Artifact>( resolvedSourcePositionMapperArtifacts ), null /* filter */ );
+            result = resolveSourcePositionMappers( resolvedSourcePositionMapperArtifactSet );
+            if ( result != null )
+            {
+                for ( SourcePositionMapper mapper : result )
+                {
+                    mapper.setCharsetName( sourceEncoding );
+                }
+            }
+        }
+        cachedSourcePositionMappers.put( key, result != null ? result : Collections.<SourcePositionMapper>emptyList() );
+        return result;
     }
 
-    private static void setCachedClassLoader( String compilerId, ClassLoader classLoader )
+    private static String normalizeGAVs( String artifactGAVs )
     {
-        cachedClassLoaders.put( compilerId, classLoader );
+        return artifactGAVs != null ? artifactGAVs.trim() : "";
     }
 
     private Compiler getSbtCompiler()
@@ -739,78 +968,15 @@ public abstract class AbstractSBTCompileMojo
     private Compiler getWellKnownSbtCompiler()
         throws MojoExecutionException
     {
-        try
-        {
-            String compilerId = Compilers.getDefaultCompilerId( sbtVersion, playVersion );
-            ClassLoader compilerClassLoader = getCachedClassLoader( compilerId );
-            if ( compilerClassLoader == null )
-            {
-                getLog().debug( String.format( "Cached classloader for compiler \"%s\" not available.", compilerId ) );
-            }
-            else
-            {
-                if ( compilerClassLoader.getParent() == Thread.currentThread().getContextClassLoader() )
-                {
-                    getLog().debug( String.format( "Using cached classloader for compiler \"%s\".", compilerId ) );
-                }
-                else
-                {
-                    getLog().debug( String.format( "Invalidated cached classloader for compiler \"%s\". Parent classloader changed from %d to %d.",
-                                                   compilerId,
-                                                   Integer.valueOf( compilerClassLoader.getParent().hashCode() ),
-                                                   Integer.valueOf( Thread.currentThread().getContextClassLoader().hashCode() ) ) );
-                    compilerClassLoader = null;
-                }
-            }
-            if ( compilerClassLoader == null )
-            {
-                Artifact compilerArtifact =
-                    getResolvedArtifact( pluginGroupId, "sbt-compiler-" + compilerId, pluginVersion );
+        String compilerId = Compilers.getDefaultCompilerId( sbtVersion, playVersion );
+        ServiceLoader<Compiler> compilerServiceLoader =
+            ServiceLoader.load( Compiler.class, getCompilerClassLoader( compilerId ) );
+        // get first (there should be exactly one)
+        Compiler sbtCompiler = compilerServiceLoader.iterator().next();
 
-                Set<Artifact> compilerDependencies = getAllDependencies( compilerArtifact, null );
-                List<File> classPathFiles = new ArrayList<File>( compilerDependencies.size() + 1 );
-//                classPathFiles.add( compilerArtifact.getFile() );
-                for ( Artifact dependencyArtifact : compilerDependencies )
-                {
-                    classPathFiles.add( dependencyArtifact.getFile() );
-                }
-                String javaHome = System.getProperty( "java.home" );
-                classPathFiles.add( new File( javaHome, "../lib/tools.jar" ) );
+        getLog().debug( String.format( "Using autodetected compiler \"%s\".", compilerId ) );
 
-                List<URL> classPathUrls = new ArrayList<URL>( classPathFiles.size() );
-                for ( File classPathFile : classPathFiles )
-                {
-                    classPathUrls.add( new URL( classPathFile.toURI().toASCIIString() ) );
-                }
-
-                compilerClassLoader =
-                    new URLClassLoader( classPathUrls.toArray( new URL[classPathUrls.size()] ),
-                                        Thread.currentThread().getContextClassLoader() );
-                getLog().debug( String.format( "Setting cached classloader for compiler \"%s\" with parent classloader %d",
-                                               compilerId, Integer.valueOf( compilerClassLoader.getParent().hashCode() ) ) );
-                setCachedClassLoader( compilerId, compilerClassLoader );
-            }
-
-            ServiceLoader<Compiler> compilerServiceLoader = ServiceLoader.load( Compiler.class, compilerClassLoader );
-            // get first (there should be exactly one)
-            Compiler sbtCompiler = compilerServiceLoader.iterator().next();
-
-            getLog().debug( String.format( "Using autodetected compiler \"%s\".", compilerId ) );
-
-            return sbtCompiler;
-        }
-        catch ( ArtifactNotFoundException e )
-        {
-            throw new MojoExecutionException( "Compiler autodetection failed", e );
-        }
-        catch ( ArtifactResolutionException e )
-        {
-            throw new MojoExecutionException( "Compiler autodetection failed", e );
-        }
-        catch ( MalformedURLException e )
-        {
-            throw new MojoExecutionException( "Compiler autodetection failed", e );
-        }
+        return sbtCompiler;
     }
 
     // "artifactGAVs" in format "groupId1:artifactId1:version1 groupId2:artifactId2:version2"
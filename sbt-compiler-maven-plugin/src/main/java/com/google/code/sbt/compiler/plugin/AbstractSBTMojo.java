@@ -0,0 +1,471 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import com.google.code.sbt.compiler.api.AnalysisProcessor;
+import com.google.code.sbt.compiler.api.Compiler;
+import com.google.code.sbt.compiler.api.Compilers;
+
+/**
+ * Abstract base class for SBT mojos.
+ * <br>
+ * <br>
+ * Selects well known compiler and its incremental compilation analysis processor
+ * and locates analysis cache files of reactor projects.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public abstract class AbstractSBTMojo
+    extends AbstractMojo
+{
+    /**
+     * Forced SBT version.<br>
+     * <br>
+     * Used to automatically select one of the "well known" SBT compilers if no compiler added explicitly as plugin's dependency.
+     * There are three cases possible:
+     * <ul>
+     * <li>
+     * If {@link #sbtVersion} is specified, compatible {@link Compiler} implementation
+     * is selected and configured to use {@link #sbtVersion} SBT version for compilation.
+     * </li>
+     * <li>
+     * If {@link #sbtVersion} is not specified, and {@link #playVersion} is specified
+     * {@link #playVersion} parameter value is used to indirectly select compatible {@link Compiler} implementation
+     * and it's {@link Compiler#getDefaultSbtVersion()} SBT version used for compilation.
+     * </li>
+     * <li>
+     * If both {@link #sbtVersion} and {@link #playVersion} are not specified
+     * the most recent {@link Compiler} implementation is selected
+     * and it's {@link Compiler#getDefaultSbtVersion()} SBT version used for compilation.
+     * </li>
+     * </ul>
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "sbt.version" )
+    protected String sbtVersion;
+
+    /**
+     * Forced Play&#33; Framework version.
+     * <br>
+     * <br>
+     * Used to select SBT version in Play&#33; Framework projects based on framework version used.
+     * See {@link #sbtVersion} for more details.
+     * 
+     * @since 1.0.0
+     */
+    @Parameter( property = "play2.version" )
+    protected String playVersion;
+
+    /**
+     * Maven project to interact with.
+     */
+    @Parameter( defaultValue = "${project}", readonly = true, required = true )
+    protected MavenProject project;
+
+    /**
+     * All Maven projects in the reactor.
+     */
+    @Parameter( defaultValue = "${reactorProjects}", required = true, readonly = true )
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * Artifact factory used to look up artifacts in the remote repository.
+     */
+    @Component
+    protected ArtifactFactory factory;
+
+    /**
+     * Artifact resolver used to resolve artifacts.
+     */
+    @Component
+    protected ArtifactResolver resolver;
+
+    /**
+     * Location of the local repository.
+     */
+    @Parameter( property = "localRepository", readonly = true, required = true )
+    protected ArtifactRepository localRepo;
+
+    /**
+     * Remote repositories used by the resolver
+     */
+    @Parameter( property = "project.remoteArtifactRepositories", readonly = true, required = true )
+    protected List<ArtifactRepository> remoteRepos;
+
+    /**
+     * For retrieval of artifact's metadata.
+     */
+    @Component
+    protected ArtifactMetadataSource metadataSource;
+
+    /**
+     * Plugin's groupId used for well known providers resolution
+     */
+    @Parameter( property = "plugin.groupId", readonly = true, required = true )
+    private String pluginGroupId;
+
+    /**
+     * Plugin's version used for well known providers resolution
+     */
+    @Parameter( property = "plugin.version", readonly = true, required = true )
+    private String pluginVersion;
+
+    /**
+     * Map of analysis processor implementations. For now only zero or one allowed.
+     */
+    @Component( role = AnalysisProcessor.class )
+    private Map<String, AnalysisProcessor> analysisProcessors;
+
+    /**
+     * Executes the goal, does nothing in {@code pom} packaging projects.
+     * 
+     * @throws MojoExecutionException if unexpected problem occurs
+     * @throws MojoFailureException if expected problem (such as compilation failure) occurs
+     */
+    @Override
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( !"pom".equals( project.getPackaging() ) )
+        {
+            long ts = System.currentTimeMillis();
+            try
+            {
+                internalExecute();
+            }
+            finally
+            {
+                long te = System.currentTimeMillis();
+                getLog().debug( String.format( "Mojo execution time: %d ms", te - ts ) );
+            }
+        }
+    }
+
+    /**
+     * Executes the goal.
+     * 
+     * @throws MojoExecutionException if unexpected problem occurs
+     * @throws MojoFailureException if expected problem (such as compilation failure) occurs
+     */
+    protected abstract void internalExecute()
+        throws MojoExecutionException, MojoFailureException;
+
+    /**
+     * Returns SBT incremental main compilation analysis cache file location for a project.
+     * 
+     * @param p Maven project
+     * @return analysis cache file location
+     */
+    protected File defaultAnalysisCacheFile( MavenProject p )
+    {
+        File classesDirectory = new File( p.getBuild().getOutputDirectory() );
+        return new File( Compilers.getCacheDirectory( classesDirectory ), "compile" );
+    }
+
+    /**
+     * Returns SBT incremental test compilation analysis cache file location for a project.
+     * 
+     * @param p Maven project
+     * @return analysis cache file location
+     */
+    protected File defaultTestAnalysisCacheFile( MavenProject p )
+    {
+        File testClassesDirectory = new File( p.getBuild().getTestOutputDirectory() );
+        return new File( Compilers.getCacheDirectory( testClassesDirectory ), "test-compile" );
+    }
+
+    /**
+     * Registers main compilation analysis cache file of a project for all known forms of its output
+     * (classes directory, packaged jar, project artifact file), so the analysis is found
+     * regardless of the form present in the classpath.
+     * 
+     * @param map analysis cache files map
+     * @param p Maven project
+     */
+    protected void addAnalysisCacheMapping( Map<File, File> map, MavenProject p )
+    {
+        File analysisCacheFile = defaultAnalysisCacheFile( p );
+        if ( analysisCacheFile.isFile() )
+        {
+            addAnalysisCacheMapping( map, analysisCacheFile, new File( p.getBuild().getOutputDirectory() ) );
+            addAnalysisCacheMapping( map, analysisCacheFile,
+                                     new File( p.getBuild().getDirectory(), p.getBuild().getFinalName() + ".jar" ) );
+            addAnalysisCacheMapping( map, analysisCacheFile, p.getArtifact().getFile() );
+        }
+    }
+
+    /**
+     * Registers test compilation analysis cache file of a project for all known forms of its output
+     * (test classes directory, packaged tests jar, attached {@code tests} artifact file), so the analysis is found
+     * regardless of the form present in the classpath.
+     * 
+     * @param map analysis cache files map
+     * @param p Maven project
+     */
+    protected void addTestAnalysisCacheMapping( Map<File, File> map, MavenProject p )
+    {
+        File testAnalysisCacheFile = defaultTestAnalysisCacheFile( p );
+        if ( testAnalysisCacheFile.isFile() )
+        {
+            addAnalysisCacheMapping( map, testAnalysisCacheFile, new File( p.getBuild().getTestOutputDirectory() ) );
+            addAnalysisCacheMapping( map, testAnalysisCacheFile,
+                                     new File( p.getBuild().getDirectory(), p.getBuild().getFinalName() + "-tests.jar" ) );
+            List<?> attachedArtifacts = p.getAttachedArtifacts();
+            for ( Object attachedArtifact : attachedArtifacts )
+            {
+                Artifact artifact = (Artifact) attachedArtifact;
+                if ( "tests".equals( artifact.getClassifier() ) )
+                {
+                    addAnalysisCacheMapping( map, testAnalysisCacheFile, artifact.getFile() );
+                }
+            }
+        }
+    }
+
+    // Private utility methods
+
+    private static void addAnalysisCacheMapping( Map<File, File> map, File analysisCacheFile, File output )
+    {
+        if ( output != null )
+        {
+            map.put( output.getAbsoluteFile(), analysisCacheFile.getAbsoluteFile() );
+        }
+    }
+
+    /**
+     * Resolves artifact.
+     * 
+     * @param groupId artifact's groupId
+     * @param artifactId artifact's artifactId
+     * @param version artifact's version
+     * @return resolved artifact
+     * @throws ArtifactNotFoundException if the artifact cannot be found
+     * @throws ArtifactResolutionException if the artifact cannot be resolved
+     */
+    protected Artifact getResolvedArtifact( String groupId, String artifactId, String version )
+        throws ArtifactNotFoundException, ArtifactResolutionException
+    {
+        Artifact artifact = factory.createArtifact( groupId, artifactId, version, Artifact.SCOPE_RUNTIME, "jar" );
+        resolver.resolve( artifact, remoteRepos, localRepo );
+        return artifact;
+    }
+
+    /**
+     * Resolves artifact with its transitive dependencies.
+     * 
+     * @param artifact artifact to resolve
+     * @param filter transitive dependencies filter
+     * @return resolved artifacts
+     * @throws ArtifactNotFoundException if an artifact cannot be found
+     * @throws ArtifactResolutionException if an artifact cannot be resolved
+     */
+    protected Set<Artifact> getAllDependencies( Artifact artifact, ArtifactFilter filter )
+        throws ArtifactNotFoundException, ArtifactResolutionException
+    {
+        return getAllDependencies( Collections.singleton( artifact ), filter );
+    }
+
+    /**
+     * Resolves artifacts with their transitive dependencies.
+     * 
+     * @param artifacts artifacts to resolve
+     * @param filter transitive dependencies filter
+     * @return resolved artifacts
+     * @throws ArtifactNotFoundException if an artifact cannot be found
+     * @throws ArtifactResolutionException if an artifact cannot be resolved
+     */
+    protected Set<Artifact> getAllDependencies( Set<Artifact> artifacts, ArtifactFilter filter )
+        throws ArtifactNotFoundException, ArtifactResolutionException
+    {
+        return getAllDependencies( artifacts, Collections.<String, Artifact>emptyMap(), filter );
+    }
+
+    /**
+     * Resolves artifacts with their transitive dependencies, applying managed versions.
+     * 
+     * @param artifacts artifacts to resolve
+     * @param managedVersions managed dependency artifacts by their dependency management keys
+     * @param filter transitive dependencies filter
+     * @return resolved artifacts
+     * @throws ArtifactNotFoundException if an artifact cannot be found
+     * @throws ArtifactResolutionException if an artifact cannot be resolved
+     */
+    protected Set<Artifact> getAllDependencies( Set<Artifact> artifacts, Map<String, Artifact> managedVersions,
+                                                ArtifactFilter filter )
+        throws ArtifactNotFoundException, ArtifactResolutionException
+    {
+        Artifact originatingArtifact = factory.createBuildArtifact( "dummy", "dummy", "1.0", "jar" );
+        ArtifactResolutionResult resolutionResult =
+            resolver.resolveTransitively( artifacts, originatingArtifact, managedVersions, localRepo,
+                                          remoteRepos, metadataSource, filter );
+        return resolutionResult.getArtifacts();
+    }
+
+    // Cached classloaders
+    private static final ConcurrentHashMap<String, ClassLoader> cachedClassLoaders = new ConcurrentHashMap<String, ClassLoader>( 2 );
+
+    private static ClassLoader getCachedClassLoader( String compilerId )
+    {
+        return cachedClassLoaders.get( compilerId );
+    }
+
+    private static void setCachedClassLoader( String compilerId, ClassLoader classLoader )
+    {
+        cachedClassLoaders.put( compilerId, classLoader );
+    }
+
+    /**
+     * Returns incremental compilation analysis processor of the compiler used by this mojo.
+     * 
+     * @return analysis processor
+     * @throws MojoExecutionException if analysis processor cannot be found
+     */
+    protected AnalysisProcessor getAnalysisProcessor()
+        throws MojoExecutionException
+    {
+        if ( !analysisProcessors.isEmpty() )
+        {
+            if ( analysisProcessors.size() > 1 )
+            {
+                throw new MojoExecutionException( "Too many analysis processors defined. A maximum of one allowed." );
+            }
+            Map.Entry<String, AnalysisProcessor> analysisProcessorEntry =
+                analysisProcessors.entrySet().iterator().next();
+            getLog().debug( String.format( "Using declared analysis processor \"%s\".",
+                                           analysisProcessorEntry.getKey() ) );
+            return analysisProcessorEntry.getValue();
+        }
+
+        String compilerId = Compilers.getDefaultCompilerId( sbtVersion, playVersion );
+        ServiceLoader<AnalysisProcessor> analysisProcessorServiceLoader =
+            ServiceLoader.load( AnalysisProcessor.class, getCompilerClassLoader( compilerId ) );
+        // get first (there should be exactly one)
+        AnalysisProcessor analysisProcessor = analysisProcessorServiceLoader.iterator().next();
+
+        getLog().debug( String.format( "Using autodetected analysis processor \"%s\".", compilerId ) );
+
+        return analysisProcessor;
+    }
+
+    /**
+     * Returns class loader of a well known compiler, cached for all mojo executions.
+     * 
+     * @param compilerId compiler identifier
+     * @return compiler class loader
+     * @throws MojoExecutionException if compiler artifacts cannot be resolved
+     */
+    protected ClassLoader getCompilerClassLoader( String compilerId )
+        throws MojoExecutionException
+    {
+        try
+        {
+            ClassLoader compilerClassLoader = getCachedClassLoader( compilerId );
+            if ( compilerClassLoader == null )
+            {
+                getLog().debug( String.format( "Cached classloader for compiler \"%s\" not available.", compilerId ) );
+            }
+            else
+            {
+                if ( compilerClassLoader.getParent() == Thread.currentThread().getContextClassLoader() )
+                {
+                    getLog().debug( String.format( "Using cached classloader for compiler \"%s\".", compilerId ) );
+                }
+                else
+                {
+                    getLog().debug( String.format( "Invalidated cached classloader for compiler \"%s\". Parent classloader changed from %d to %d.",
+                                                   compilerId,
+                                                   Integer.valueOf( compilerClassLoader.getParent().hashCode() ),
+                                                   Integer.valueOf( Thread.currentThread().getContextClassLoader().hashCode() ) ) );
+                    compilerClassLoader = null;
+                }
+            }
+            if ( compilerClassLoader == null )
+            {
+                Artifact compilerArtifact =
+                    getResolvedArtifact( pluginGroupId, "sbt-compiler-" + compilerId, pluginVersion );
+
+                Set<Artifact> compilerDependencies = getAllDependencies( compilerArtifact, null );
+                List<File> classPathFiles = new ArrayList<File>( compilerDependencies.size() + 1 );
+//                classPathFiles.add( compilerArtifact.getFile() );
+                for ( Artifact dependencyArtifact : compilerDependencies )
+                {
+                    classPathFiles.add( dependencyArtifact.getFile() );
+                }
+                String javaHome = System.getProperty( "java.home" );
+                classPathFiles.add( new File( javaHome, "../lib/tools.jar" ) );
+
+                List<URL> classPathUrls = new ArrayList<URL>( classPathFiles.size() );
+                for ( File classPathFile : classPathFiles )
+                {
+                    classPathUrls.add( new URL( classPathFile.toURI().toASCIIString() ) );
+                }
+
+                compilerClassLoader =
+                    new URLClassLoader( classPathUrls.toArray( new URL[classPathUrls.size()] ),
+                                        Thread.currentThread().getContextClassLoader() );
+                getLog().debug( String.format( "Setting cached classloader for compiler \"%s\" with parent classloader %d",
+                                               compilerId, Integer.valueOf( compilerClassLoader.getParent().hashCode() ) ) );
+                setCachedClassLoader( compilerId, compilerClassLoader );
+            }
+
+            return compilerClassLoader;
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            throw new MojoExecutionException( "Compiler autodetection failed", e );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            throw new MojoExecutionException( "Compiler autodetection failed", e );
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new MojoExecutionException( "Compiler autodetection failed", e );
+        }
+    }
+
+}
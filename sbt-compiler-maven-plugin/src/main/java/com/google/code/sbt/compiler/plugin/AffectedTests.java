@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.code.sbt.compiler.api.Analysis;
+
+/**
+ * Selection of test classes affected by changed source files.
+ * <br>
+ * <br>
+ * Source files of test compilation analysis and of analyses of compilations it depends on (main sources
+ * of the same project, other reactor modules) form one dependency graph. Dependencies between source files
+ * of the same compilation are taken from member reference dependencies, dependencies on other compilations
+ * from external class dependencies, resolved to source files by names of classes they define.
+ * Test classes defined in test sources transitively depending on changed sources (or changed themselves)
+ * are affected.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class AffectedTests
+{
+    private final File[] sourceFiles;
+
+    private final long[] compilationTimes;
+
+    private final int testSourceCount; // test sources are first
+
+    private final Analysis testAnalysis;
+
+    private final DependencyGraph graph;
+
+    /**
+     * Builds dependency graph of test sources and sources they depend on.
+     *
+     * @param testAnalysis test compilation analysis
+     * @param upstreamAnalyses analyses of compilations test compilation depends on
+     */
+    public AffectedTests( Analysis testAnalysis, List<Analysis> upstreamAnalyses )
+    {
+        this.testAnalysis = testAnalysis;
+        List<Analysis> analyses = new ArrayList<Analysis>( upstreamAnalyses.size() + 1 );
+        analyses.add( testAnalysis );
+        analyses.addAll( upstreamAnalyses );
+
+        List<File> files = new ArrayList<File>();
+        int[] analysisOffsets = new int[analyses.size() + 1];
+        Map<File, Integer> indexes = new HashMap<File, Integer>();
+        Map<String, Integer> classSources = new HashMap<String, Integer>();
+        for ( int a = 0; a < analyses.size(); a++ )
+        {
+            Analysis analysis = analyses.get( a );
+            for ( File sourceFile : analysis.getSourceFiles() )
+            {
+                Integer index = Integer.valueOf( files.size() );
+                files.add( sourceFile );
+                indexes.put( sourceFile, index );
+                for ( String className : analysis.getClassNames( sourceFile ) )
+                {
+                    classSources.put( className, index );
+                }
+            }
+            analysisOffsets[a + 1] = files.size();
+        }
+        sourceFiles = files.toArray( new File[files.size()] );
+        testSourceCount = analysisOffsets[1];
+        compilationTimes = new long[sourceFiles.length];
+
+        DependencyGraph.Edges edges = new DependencyGraph.Edges();
+        for ( int a = 0; a < analyses.size(); a++ )
+        {
+            Analysis analysis = analyses.get( a );
+            for ( int i = analysisOffsets[a]; i < analysisOffsets[a + 1]; i++ )
+            {
+                compilationTimes[i] = analysis.getCompilationTime( sourceFiles[i] );
+                for ( File dependency : analysis.getMemberRefDependencies( sourceFiles[i] ) )
+                {
+                    Integer index = indexes.get( dependency );
+                    if ( index != null && index.intValue() != i )
+                    {
+                        edges.add( index.intValue(), i );
+                    }
+                }
+                for ( String className : analysis.getExternalDependencies( sourceFiles[i] ) )
+                {
+                    Integer index = classSources.get( className );
+                    if ( index == null && className.endsWith( "$" ) )
+                    {
+                        index = classSources.get( className.substring( 0, className.length() - 1 ) );
+                    }
+                    if ( index != null && index.intValue() != i )
+                    {
+                        edges.add( index.intValue(), i );
+                    }
+                }
+            }
+        }
+        graph = new DependencyGraph( sourceFiles.length, edges );
+    }
+
+    /**
+     * Returns number of all source files.
+     *
+     * @return number of source files
+     */
+    public int getSourceCount()
+    {
+        return sourceFiles.length;
+    }
+
+    /**
+     * Returns source file.
+     *
+     * @param index source file index
+     * @return source file
+     */
+    public File getSourceFile( int index )
+    {
+        return sourceFiles[index];
+    }
+
+    /**
+     * Returns source file's compilation time.
+     *
+     * @param index source file index
+     * @return source file's compilation time
+     */
+    public long getCompilationTime( int index )
+    {
+        return compilationTimes[index];
+    }
+
+    /**
+     * Returns number of dependencies between source files.
+     *
+     * @return number of dependencies
+     */
+    public int getDependencyCount()
+    {
+        return graph.getEdgeCount();
+    }
+
+    /**
+     * Returns names of test classes affected by changed source files. Nested classes are not returned.
+     *
+     * @param changed changed source files, indexed by source file index
+     * @return sorted names of affected test classes
+     */
+    public Set<String> getAffectedTestClasses( boolean[] changed )
+    {
+        boolean[] affected = changed.clone();
+        graph.markReachable( affected );
+        Set<String> result = new TreeSet<String>();
+        for ( int i = 0; i < testSourceCount; i++ )
+        {
+            if ( affected[i] )
+            {
+                for ( String className : testAnalysis.getClassNames( sourceFiles[i] ) )
+                {
+                    String name = className.endsWith( "$" ) ? className.substring( 0, className.length() - 1 )
+                                    : className;
+                    if ( name.indexOf( '$' ) < 0 )
+                    {
+                        result.add( name );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+}
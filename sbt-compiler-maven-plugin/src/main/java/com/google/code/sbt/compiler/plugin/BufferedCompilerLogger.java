@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.code.sbt.compiler.api.CompilerLogger;
+
+/**
+ * {@link CompilerLogger} handing messages to a bounded buffer drained by a background writer thread.
+ * <br>
+ * <br>
+ * Compiling thread does not write to the console. Messages are collected by the writer thread
+ * and written to the {@link CompilerLogger} delegate in blocks of at most buffer capacity messages,
+ * when a block is full and when the logger is closed, so output of modules compiled in parallel
+ * is interleaved only between blocks and memory used by messages is bounded. Compiling thread blocks only
+ * if the buffer is full or when waiting for the last output block to be written.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class BufferedCompilerLogger
+    implements CompilerLogger
+{
+    /**
+     * Default buffer capacity (number of messages).
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // all loggers write their output blocks holding this lock
+    private static final Object OUTPUT_LOCK = new Object();
+
+    private static final int DEBUG = 0;
+
+    private static final int INFO = 1;
+
+    private static final int WARN = 2;
+
+    private static final int ERROR = 3;
+
+    private static final Message END = new Message( -1, null );
+
+    private CompilerLogger delegate;
+
+    private int capacity;
+
+    private BlockingQueue<Message> queue;
+
+    private Thread writer;
+
+    private long blockedNanos;
+
+    private boolean closed;
+
+    /**
+     * Creates buffered logger and starts its writer thread.
+     * 
+     * @param delegate {@link CompilerLogger} delegate
+     * @param capacity buffer capacity (number of messages)
+     */
+    public BufferedCompilerLogger( CompilerLogger delegate, int capacity )
+    {
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<Message>( capacity );
+        this.writer = new Thread( new Writer(), "sbt-compiler-logger" );
+        this.writer.setDaemon( true );
+        this.writer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDebugEnabled()
+    {
+        return delegate.isDebugEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug( String content )
+    {
+        add( new Message( DEBUG, content ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug( Throwable throwable )
+    {
+        add( new Message( DEBUG, throwable ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isInfoEnabled()
+    {
+        return delegate.isInfoEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info( String content )
+    {
+        add( new Message( INFO, content ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWarnEnabled()
+    {
+        return delegate.isWarnEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn( String content )
+    {
+        add( new Message( WARN, content ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isErrorEnabled()
+    {
+        return delegate.isErrorEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error( String content )
+    {
+        add( new Message( ERROR, content ) );
+    }
+
+    /**
+     * Waits until all buffered messages are written to the delegate and stops the writer thread.
+     * <br>
+     * Messages logged after closing are written to the delegate directly.
+     */
+    public void close()
+    {
+        if ( !closed )
+        {
+            add( END );
+            closed = true;
+            long ts = System.nanoTime();
+            try
+            {
+                writer.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            blockedNanos += System.nanoTime() - ts;
+        }
+    }
+
+    /**
+     * Returns total time the logging thread was blocked waiting for free buffer space
+     * or for the output to be written.
+     * 
+     * @return blocked time in milliseconds
+     */
+    public long getBlockedTime()
+    {
+        return blockedNanos / 1000000L;
+    }
+
+    private void add( Message message )
+    {
+        if ( closed )
+        {
+            write( message );
+        }
+        else if ( !queue.offer( message ) )
+        {
+            long ts = System.nanoTime();
+            try
+            {
+                queue.put( message );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                write( message ); // do not lose the message
+            }
+            blockedNanos += System.nanoTime() - ts;
+        }
+    }
+
+    private void write( Message message )
+    {
+        switch ( message.level )
+        {
+            case DEBUG:
+                if ( message.content instanceof Throwable )
+                {
+                    delegate.debug( (Throwable) message.content );
+                }
+                else
+                {
+                    delegate.debug( (String) message.content );
+                }
+                break;
+            case INFO:
+                delegate.info( (String) message.content );
+                break;
+            case WARN:
+                delegate.warn( (String) message.content );
+                break;
+            case ERROR:
+                delegate.error( (String) message.content );
+                break;
+            default:
+                break;
+        }
+    }
+
+    private class Writer
+        implements Runnable
+    {
+        public void run()
+        {
+            List<Message> block = new ArrayList<Message>( capacity );
+            try
+            {
+                Message message = queue.take();
+                while ( message != END )
+                {
+                    block.add( message );
+                    if ( block.size() == capacity )
+                    {
+                        writeBlock( block );
+                    }
+                    message = queue.take();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            writeBlock( block );
+        }
+
+        private void writeBlock( List<Message> block )
+        {
+            synchronized ( OUTPUT_LOCK )
+            {
+                for ( Message message : block )
+                {
+                    write( message );
+                }
+            }
+            block.clear();
+        }
+    }
+
+    private static class Message
+    {
+        private final int level;
+
+        private final Object content;
+
+        Message( int level, Object content )
+        {
+            this.level = level;
+            this.content = content;
+        }
+    }
+
+}
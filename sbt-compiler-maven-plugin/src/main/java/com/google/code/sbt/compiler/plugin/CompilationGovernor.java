@@ -0,0 +1,307 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.code.sbt.compiler.api.Analysis;
+import com.google.code.sbt.compiler.api.CompilationPermit;
+
+/**
+ * JVM-wide limiter of concurrently running compilations.
+ * <br>
+ * <br>
+ * In parallel builds several compilers run in one JVM at the same time. Every compilation
+ * uses one processor core and needs heap memory estimated from the number of its sources
+ * and from peak heap usage measured during previous compilation of the same module.
+ * Compilation starts only if its cost fits in the remaining core and heap budgets,
+ * otherwise it waits for other compilations to finish. Compilation always starts
+ * if no other compilation is running.
+ * <br>
+ * <br>
+ * Compiler acquires the permit only if sources will be compiled, up to date compilations do not wait.
+ * Peak heap usage is measured only if no other compilation was running at the same time and is recorded
+ * only if most sources were recompiled, so small incremental compilations do not lower the estimate.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class CompilationGovernor
+    implements CompilationPermit
+{
+    private static final long DEFAULT_BASE_HEAP = 128L * 1024L * 1024L;
+
+    private static final long DEFAULT_SOURCE_HEAP = 1024L * 1024L;
+
+    private static final String HISTORY_FILE_ENCODING = "UTF-8";
+
+    private static final Object lock = new Object();
+
+    private static int runningCount;
+
+    private static long usedHeap;
+
+    private static long startedCount;
+
+    private final int coreBudget;
+
+    private final long heapBudget;
+
+    private final File historyFile;
+
+    private final int sourceCount;
+
+    private final Log log;
+
+    private long heapEstimate;
+
+    private long startedCountAtStart;
+
+    private long heapUsageAtStart = -1L; // -1 if peak heap usage is not measured
+
+    private long startTime;
+
+    private boolean acquired;
+
+    /**
+     * Creates compilation governor.
+     *
+     * @param coreBudget maximum number of concurrently running compilations, {@code 0} means no limit
+     * @param heapBudget maximum heap memory in bytes used by concurrently running compilations,
+     *            {@code 0} means no limit
+     * @param historyFile file storing peak heap usage of previous compilation
+     * @param sourceCount number of sources to compile
+     * @param log Maven logger
+     */
+    public CompilationGovernor( int coreBudget, long heapBudget, File historyFile, int sourceCount, Log log )
+    {
+        this.coreBudget = coreBudget;
+        this.heapBudget = heapBudget;
+        this.historyFile = historyFile;
+        this.sourceCount = sourceCount;
+        this.log = log;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void acquire()
+        throws InterruptedException
+    {
+        heapEstimate = estimateHeap();
+        long waitTime = 0L;
+        synchronized ( lock )
+        {
+            while ( runningCount > 0
+                && ( coreBudget > 0 && runningCount + 1 > coreBudget
+                    || heapBudget > 0 && usedHeap + heapEstimate > heapBudget ) )
+            {
+                long ts = System.currentTimeMillis();
+                lock.wait();
+                waitTime += System.currentTimeMillis() - ts;
+            }
+            if ( runningCount == 0 )
+            {
+                heapUsageAtStart = resetPeakHeapUsage();
+            }
+            runningCount++;
+            usedHeap += heapEstimate;
+            startedCount++;
+            startedCountAtStart = startedCount;
+            acquired = true;
+        }
+        startTime = System.currentTimeMillis();
+        String message = String.format( "Waited %d ms for compilation resources (estimated heap usage %d MB)",
+                                        waitTime, heapEstimate / ( 1024L * 1024L ) );
+        if ( waitTime > 0 )
+        {
+            log.info( message );
+        }
+        else
+        {
+            log.debug( message );
+        }
+    }
+
+    /**
+     * Releases resources used by finished compilation and, if it was the only running compilation
+     * and most sources were recompiled, stores its peak heap usage. Does nothing if the permit was not acquired.
+     *
+     * @param analysis analysis of successful compilation, {@code null} if the compilation failed
+     */
+    public void release( Analysis analysis )
+    {
+        if ( !acquired )
+        {
+            return;
+        }
+        acquired = false;
+        boolean alone;
+        synchronized ( lock )
+        {
+            runningCount--;
+            usedHeap -= heapEstimate;
+            alone = heapUsageAtStart >= 0 && startedCount == startedCountAtStart;
+            lock.notifyAll();
+        }
+        if ( alone && analysis != null )
+        {
+            long peakHeapUsage = getPeakHeapUsage() - heapUsageAtStart;
+            int recompiledCount = getRecompiledSourceCount( analysis );
+            if ( peakHeapUsage > 0 && recompiledCount * 2 >= sourceCount )
+            {
+                writeHistory( recompiledCount, peakHeapUsage );
+            }
+            else
+            {
+                log.debug( String.format( "Heap usage of compilation of %d of %d sources not recorded",
+                                          recompiledCount, sourceCount ) );
+            }
+        }
+    }
+
+    private long estimateHeap()
+    {
+        long[] history = readHistory();
+        if ( history != null && history[0] > 0 )
+        {
+            // previous compilation scaled by number of sources, never less than half of it
+            return Math.max( history[1] / 2, history[1] * sourceCount / history[0] );
+        }
+        return DEFAULT_BASE_HEAP + DEFAULT_SOURCE_HEAP * sourceCount;
+    }
+
+    private int getRecompiledSourceCount( Analysis analysis )
+    {
+        int result = 0;
+        for ( File sourceFile : analysis.getSourceFiles() )
+        {
+            if ( analysis.getCompilationTime( sourceFile ) >= startTime )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static long resetPeakHeapUsage()
+    {
+        long result = 0L;
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getType() == MemoryType.HEAP && pool.isValid() )
+            {
+                pool.resetPeakUsage();
+                result += pool.getUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    // sum of peak usages of heap pools, an upper bound of real peak heap usage
+    private static long getPeakHeapUsage()
+    {
+        long result = 0L;
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getType() == MemoryType.HEAP && pool.isValid() )
+            {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    // history file format: "sourceCount<TAB>peakHeapUsage" line
+    private long[] readHistory()
+    {
+        long[] result = null;
+        if ( historyFile.isFile() )
+        {
+            try
+            {
+                BufferedReader reader =
+                    new BufferedReader( new InputStreamReader( new FileInputStream( historyFile ),
+                                                               HISTORY_FILE_ENCODING ) );
+                try
+                {
+                    String line = reader.readLine();
+                    int tab = line != null ? line.indexOf( '\t' ) : -1;
+                    if ( tab > 0 )
+                    {
+                        result =
+                            new long[] { Long.parseLong( line.substring( 0, tab ) ),
+                                Long.parseLong( line.substring( tab + 1 ) ) };
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                log.debug( e );
+            }
+            catch ( IOException e )
+            {
+                log.warn( String.format( "Compilation heap usage history reading error: %s", e.getMessage() ) );
+            }
+        }
+        return result;
+    }
+
+    private void writeHistory( int compiledCount, long peakHeapUsage )
+    {
+        File historyDirectory = historyFile.getParentFile();
+        if ( !historyDirectory.isDirectory() && !historyDirectory.mkdirs() && !historyDirectory.isDirectory() )
+        {
+            return;
+        }
+        try
+        {
+            Writer writer =
+                new OutputStreamWriter( new FileOutputStream( historyFile ), HISTORY_FILE_ENCODING );
+            try
+            {
+                writer.write( compiledCount + "\t" + peakHeapUsage + "\n" );
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( String.format( "Compilation heap usage history writing error: %s", e.getMessage() ) );
+        }
+    }
+
+}
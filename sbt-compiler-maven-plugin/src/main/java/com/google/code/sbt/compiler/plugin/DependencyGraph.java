@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Directed graph of source files stored in compact int-indexed adjacency arrays.
+ * <br>
+ * <br>
+ * Nodes are indexes of source files. An edge leads from a dependency to the dependent source file,
+ * so nodes reachable from a source file are the sources invalidated by its change.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+class DependencyGraph
+{
+    // targets of node "n" are "targets[offsets[n]]" .. "targets[offsets[n + 1] - 1]"
+    protected final int[] offsets;
+
+    protected final int[] targets;
+
+    /**
+     * Creates graph from the list of edges.
+     *
+     * @param nodeCount number of nodes
+     * @param edges graph edges
+     */
+    DependencyGraph( int nodeCount, Edges edges )
+    {
+        offsets = new int[nodeCount + 1];
+        targets = new int[edges.size];
+        for ( int i = 0; i < edges.size; i++ )
+        {
+            offsets[edges.from[i] + 1]++;
+        }
+        for ( int n = 0; n < nodeCount; n++ )
+        {
+            offsets[n + 1] += offsets[n];
+        }
+        int[] next = Arrays.copyOf( offsets, nodeCount );
+        for ( int i = 0; i < edges.size; i++ )
+        {
+            targets[next[edges.from[i]]++] = edges.to[i];
+        }
+    }
+
+    /**
+     * Returns number of nodes.
+     *
+     * @return number of nodes
+     */
+    int getNodeCount()
+    {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns number of edges.
+     *
+     * @return number of edges
+     */
+    int getEdgeCount()
+    {
+        return targets.length;
+    }
+
+    /**
+     * Returns number of edges leading from the node.
+     *
+     * @param node node index
+     * @return number of edges leading from the node
+     */
+    int getTargetCount( int node )
+    {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * Marks all nodes reachable from already marked nodes.
+     *
+     * @param marked marked nodes, updated in place
+     */
+    void markReachable( boolean[] marked )
+    {
+        int[] queue = new int[marked.length];
+        int tail = 0;
+        for ( int n = 0; n < marked.length; n++ )
+        {
+            if ( marked[n] )
+            {
+                queue[tail++] = n;
+            }
+        }
+        for ( int head = 0; head < tail; head++ )
+        {
+            int n = queue[head];
+            for ( int e = offsets[n]; e < offsets[n + 1]; e++ )
+            {
+                int target = targets[e];
+                if ( !marked[target] )
+                {
+                    marked[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable list of graph edges.
+     */
+    static class Edges
+    {
+        private int[] from = new int[1024];
+
+        private int[] to = new int[1024];
+
+        private int size;
+
+        /**
+         * Adds an edge.
+         *
+         * @param source source node
+         * @param target target node
+         */
+        void add( int source, int target )
+        {
+            if ( size == from.length )
+            {
+                from = Arrays.copyOf( from, size * 2 );
+                to = Arrays.copyOf( to, size * 2 );
+            }
+            from[size] = source;
+            to[size] = target;
+            size++;
+        }
+    }
+
+}
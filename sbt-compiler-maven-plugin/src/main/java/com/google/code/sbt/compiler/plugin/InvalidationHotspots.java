@@ -0,0 +1,385 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.code.sbt.compiler.api.Analysis;
+
+/**
+ * Invalidation fan-out of source files computed from incremental compilation analysis.
+ * <br>
+ * <br>
+ * Blast radius of a source file is the number of other source files transitively depending on it,
+ * the upper bound of the number of sources recompiled when its API changes. It is computed separately
+ * for dependencies by member reference (which include dependencies by inheritance) and for dependencies
+ * by inheritance only.
+ * <br>
+ * <br>
+ * Dependency graphs are stored in compact int-indexed adjacency arrays (see {@link DependencyGraph}).
+ * Strongly connected components of a graph are found first, all sources of a component have the same
+ * blast radius. Sets of sources reachable from components are computed as bit sets in reverse topological
+ * order of the components, every set is the union of the sets of directly dependent components
+ * and is released as soon as all components depending on it are processed.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class InvalidationHotspots
+{
+    private final File[] sourceFiles;
+
+    private final Graph memberRef;
+
+    private final Graph inheritance;
+
+    /**
+     * Computes invalidation fan-out of all source files of the analysis.
+     *
+     * @param analysis incremental compilation analysis
+     */
+    public InvalidationHotspots( Analysis analysis )
+    {
+        Set<File> sources = analysis.getSourceFiles();
+        sourceFiles = sources.toArray( new File[sources.size()] );
+        Arrays.sort( sourceFiles );
+        Map<File, Integer> indexes = new HashMap<File, Integer>( sourceFiles.length * 2 );
+        for ( int i = 0; i < sourceFiles.length; i++ )
+        {
+            indexes.put( sourceFiles[i], Integer.valueOf( i ) );
+        }
+
+        DependencyGraph.Edges memberRefEdges = new DependencyGraph.Edges();
+        DependencyGraph.Edges inheritanceEdges = new DependencyGraph.Edges();
+        for ( int i = 0; i < sourceFiles.length; i++ )
+        {
+            addEdges( memberRefEdges, i, analysis.getMemberRefDependencies( sourceFiles[i] ), indexes );
+            addEdges( inheritanceEdges, i, analysis.getInheritanceDependencies( sourceFiles[i] ), indexes );
+        }
+        memberRef = new Graph( sourceFiles.length, memberRefEdges );
+        inheritance = new Graph( sourceFiles.length, inheritanceEdges );
+    }
+
+    /**
+     * Returns number of source files.
+     *
+     * @return number of source files
+     */
+    public int getSourceCount()
+    {
+        return sourceFiles.length;
+    }
+
+    /**
+     * Returns source file.
+     *
+     * @param index source file index
+     * @return source file
+     */
+    public File getSourceFile( int index )
+    {
+        return sourceFiles[index];
+    }
+
+    /**
+     * Returns number of dependencies by member reference between source files.
+     *
+     * @return number of dependencies by member reference
+     */
+    public int getMemberRefDependencyCount()
+    {
+        return memberRef.getEdgeCount();
+    }
+
+    /**
+     * Returns number of dependencies by inheritance between source files.
+     *
+     * @return number of dependencies by inheritance
+     */
+    public int getInheritanceDependencyCount()
+    {
+        return inheritance.getEdgeCount();
+    }
+
+    /**
+     * Returns number of source files directly depending on the source file by member reference.
+     *
+     * @param index source file index
+     * @return number of direct dependents
+     */
+    public int getMemberRefDependents( int index )
+    {
+        return memberRef.getTargetCount( index );
+    }
+
+    /**
+     * Returns number of source files transitively depending on the source file by member reference.
+     *
+     * @param index source file index
+     * @return member reference blast radius
+     */
+    public int getMemberRefRadius( int index )
+    {
+        return memberRef.radius[index];
+    }
+
+    /**
+     * Returns number of source files transitively depending on the source file by inheritance.
+     *
+     * @param index source file index
+     * @return inheritance blast radius
+     */
+    public int getInheritanceRadius( int index )
+    {
+        return inheritance.radius[index];
+    }
+
+    /**
+     * Returns indexes of source files ordered by member reference blast radius, then by inheritance
+     * blast radius, largest first.
+     *
+     * @return ranked source file indexes
+     */
+    public Integer[] getRanking()
+    {
+        Integer[] result = new Integer[sourceFiles.length];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = Integer.valueOf( i );
+        }
+        Arrays.sort( result, new Comparator<Integer>()
+        {
+            public int compare( Integer o1, Integer o2 )
+            {
+                int i1 = o1.intValue();
+                int i2 = o2.intValue();
+                if ( memberRef.radius[i1] != memberRef.radius[i2] )
+                {
+                    return memberRef.radius[i1] > memberRef.radius[i2] ? -1 : 1;
+                }
+                if ( inheritance.radius[i1] != inheritance.radius[i2] )
+                {
+                    return inheritance.radius[i1] > inheritance.radius[i2] ? -1 : 1;
+                }
+                return i1 - i2;
+            }
+        } );
+        return result;
+    }
+
+    // edge from dependency to dependent source, change of the dependency invalidates the dependent
+    private static void addEdges( DependencyGraph.Edges edges, int dependent, Set<File> dependencies,
+                                  Map<File, Integer> indexes )
+    {
+        for ( File dependency : dependencies )
+        {
+            Integer index = indexes.get( dependency );
+            if ( index != null && index.intValue() != dependent )
+            {
+                edges.add( index.intValue(), dependent );
+            }
+        }
+    }
+
+    private static class Graph
+        extends DependencyGraph
+    {
+        private final int[] radius;
+
+        Graph( int nodeCount, Edges edges )
+        {
+            super( nodeCount, edges );
+            radius = computeRadius( nodeCount );
+        }
+
+        private int[] computeRadius( int nodeCount )
+        {
+            int[] component = new int[nodeCount];
+            int componentCount = findComponents( nodeCount, component );
+
+            // component members in adjacency arrays format
+            int[] memberOffsets = new int[componentCount + 1];
+            for ( int n = 0; n < nodeCount; n++ )
+            {
+                memberOffsets[component[n] + 1]++;
+            }
+            for ( int c = 0; c < componentCount; c++ )
+            {
+                memberOffsets[c + 1] += memberOffsets[c];
+            }
+            int[] members = new int[nodeCount];
+            int[] next = Arrays.copyOf( memberOffsets, componentCount );
+            for ( int n = 0; n < nodeCount; n++ )
+            {
+                members[next[component[n]]++] = n;
+            }
+
+            // number of distinct components depending on every component
+            int[] mark = new int[componentCount];
+            Arrays.fill( mark, -1 );
+            int[] predecessorCount = new int[componentCount];
+            for ( int c = 0; c < componentCount; c++ )
+            {
+                for ( int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++ )
+                {
+                    int n = members[m];
+                    for ( int e = offsets[n]; e < offsets[n + 1]; e++ )
+                    {
+                        int target = component[targets[e]];
+                        if ( target != c && mark[target] != c )
+                        {
+                            mark[target] = c;
+                            predecessorCount[target]++;
+                        }
+                    }
+                }
+            }
+
+            // components are numbered in reverse topological order, targets of a component are processed before it
+            int words = ( nodeCount + 63 ) >>> 6;
+            long[][] reachable = new long[componentCount][];
+            int[] componentRadius = new int[componentCount];
+            Arrays.fill( mark, -1 );
+            for ( int c = 0; c < componentCount; c++ )
+            {
+                long[] bits = new long[words];
+                for ( int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++ )
+                {
+                    int n = members[m];
+                    bits[n >>> 6] |= 1L << ( n & 63 );
+                }
+                for ( int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++ )
+                {
+                    int n = members[m];
+                    for ( int e = offsets[n]; e < offsets[n + 1]; e++ )
+                    {
+                        int target = component[targets[e]];
+                        if ( target != c && mark[target] != c )
+                        {
+                            mark[target] = c;
+                            long[] targetBits = reachable[target];
+                            for ( int w = 0; w < words; w++ )
+                            {
+                                bits[w] |= targetBits[w];
+                            }
+                            if ( --predecessorCount[target] == 0 )
+                            {
+                                reachable[target] = null;
+                            }
+                        }
+                    }
+                }
+                int count = 0;
+                for ( int w = 0; w < words; w++ )
+                {
+                    count += Long.bitCount( bits[w] );
+                }
+                componentRadius[c] = count - 1; // the source itself is not counted
+                if ( predecessorCount[c] > 0 )
+                {
+                    reachable[c] = bits;
+                }
+            }
+
+            int[] result = new int[nodeCount];
+            for ( int n = 0; n < nodeCount; n++ )
+            {
+                result[n] = componentRadius[component[n]];
+            }
+            return result;
+        }
+
+        // iterative Tarjan's algorithm, components are numbered in reverse topological order
+        private int findComponents( int nodeCount, int[] component )
+        {
+            int[] index = new int[nodeCount];
+            int[] low = new int[nodeCount];
+            Arrays.fill( index, -1 );
+            Arrays.fill( component, -1 );
+            int[] stack = new int[nodeCount];
+            int stackSize = 0;
+            int[] callStack = new int[nodeCount];
+            int[] edgePosition = new int[nodeCount];
+            int callStackSize = 0;
+            int counter = 0;
+            int componentCount = 0;
+            for ( int root = 0; root < nodeCount; root++ )
+            {
+                if ( index[root] >= 0 )
+                {
+                    continue;
+                }
+                index[root] = counter;
+                low[root] = counter;
+                counter++;
+                stack[stackSize++] = root;
+                callStack[callStackSize] = root;
+                edgePosition[callStackSize] = offsets[root];
+                callStackSize++;
+                while ( callStackSize > 0 )
+                {
+                    int n = callStack[callStackSize - 1];
+                    if ( edgePosition[callStackSize - 1] < offsets[n + 1] )
+                    {
+                        int target = targets[edgePosition[callStackSize - 1]++];
+                        if ( index[target] < 0 )
+                        {
+                            index[target] = counter;
+                            low[target] = counter;
+                            counter++;
+                            stack[stackSize++] = target;
+                            callStack[callStackSize] = target;
+                            edgePosition[callStackSize] = offsets[target];
+                            callStackSize++;
+                        }
+                        else if ( component[target] < 0 ) // on stack
+                        {
+                            low[n] = Math.min( low[n], index[target] );
+                        }
+                    }
+                    else
+                    {
+                        callStackSize--;
+                        if ( low[n] == index[n] )
+                        {
+                            int member;
+                            do
+                            {
+                                member = stack[--stackSize];
+                                component[member] = componentCount;
+                            }
+                            while ( member != n );
+                            componentCount++;
+                        }
+                        if ( callStackSize > 0 )
+                        {
+                            int parent = callStack[callStackSize - 1];
+                            low[parent] = Math.min( low[parent], low[n] );
+                        }
+                    }
+                }
+            }
+            return componentCount;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.code.sbt.compiler.api.CompilationCancellation;
+
+/**
+ * {@link CompilationCancellation} cancelled when compilation of another module fails.
+ * <br>
+ * <br>
+ * Used in parallel builds. All compilations running in the same JVM are registered,
+ * when one of them fails, all other registered compilations are cancelled, so the build
+ * does not wait for them to finish.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class ReactorCompilationCancellation
+    implements CompilationCancellation
+{
+    private static final List<ReactorCompilationCancellation> running = new ArrayList<ReactorCompilationCancellation>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Registers running compilation.
+     */
+    public void start()
+    {
+        synchronized ( running )
+        {
+            running.add( this );
+        }
+    }
+
+    /**
+     * Unregisters finished compilation. If the compilation failed, all other running compilations are cancelled.
+     *
+     * @param failed {@code true} if the compilation failed
+     */
+    public void finish( boolean failed )
+    {
+        synchronized ( running )
+        {
+            running.remove( this );
+            if ( failed )
+            {
+                for ( ReactorCompilationCancellation other : running )
+                {
+                    other.cancelled = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import com.google.code.sbt.compiler.api.Analysis;
+import com.google.code.sbt.compiler.api.AnalysisProcessor;
+
+/**
+ * Select test classes affected by changes since a baseline.<br>
+ * <br>
+ * Reads incremental compilation analyses of test sources and of compilations they depend on
+ * (main sources of the project and reactor modules in the test classpath) and selects test classes
+ * transitively depending on sources changed since a baseline. The baseline is either a list of changed
+ * source files (for example output of {@code git diff --name-only}) or a snapshot of compilation times
+ * of all sources stored by this goal, in which case all sources recompiled since the snapshot are changed.
+ * <br>
+ * <br>
+ * Selected test classes are written in Surefire {@code includesFile} format. Changes of files other than analyzed
+ * sources (resources, project file, deleted sources) select all test classes. If all changes are analyzed sources
+ * and no test class is affected, {@code skipTests} project property is set to {@code true}.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ * @since 1.0.1
+ */
+@Mojo( name = "affectedTests", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, requiresDependencyResolution = ResolutionScope.TEST )
+public class SBTAffectedTestsMojo
+    extends AbstractSBTMojo
+{
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Set this to {@code true} to bypass affected test classes selection.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "maven.test.skip" )
+    protected boolean skipTest;
+
+    /**
+     * Surefire include patterns file the affected test classes are written to.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.affectedTestsFile", defaultValue = "${project.build.directory}/affected-tests.txt" )
+    protected File affectedTestsFile;
+
+    /**
+     * File containing changed source files, one path per line. Relative paths may be relative to any parent
+     * directory of the source files (for example repository root). If set, takes precedence
+     * over {@code affectedTestsBaseline} snapshot.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.changedFiles" )
+    protected File changedFiles;
+
+    /**
+     * Snapshot of compilation times of all sources used as the baseline. If it does not exist
+     * and {@code changedFiles} is not set, all test classes are selected.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.affectedTestsBaseline", defaultValue = "${project.build.directory}/affected-tests-baseline.txt" )
+    protected File affectedTestsBaseline;
+
+    /**
+     * Store current compilation times of all sources in {@code affectedTestsBaseline} snapshot
+     * after selecting affected test classes.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.updateAffectedTestsBaseline", defaultValue = "false" )
+    protected boolean updateAffectedTestsBaseline;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void internalExecute()
+        throws MojoExecutionException
+    {
+        if ( skipTest )
+        {
+            getLog().info( "Not selecting affected tests" );
+            return;
+        }
+        File testAnalysisCacheFile = defaultTestAnalysisCacheFile( project ).getAbsoluteFile();
+        if ( !testAnalysisCacheFile.isFile() )
+        {
+            getLog().info( String.format( "No analysis cache file \"%s\", compile test sources first",
+                                          testAnalysisCacheFile.getPath() ) );
+            return;
+        }
+
+        long ts = System.currentTimeMillis();
+        AnalysisProcessor analysisProcessor = getAnalysisProcessor();
+        Analysis testAnalysis = analysisProcessor.readFromFile( testAnalysisCacheFile );
+        // analyses of compilations in test classpath
+        Map<File, File> analysisCacheMap = new HashMap<File, File>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            addAnalysisCacheMapping( analysisCacheMap, reactorProject );
+            if ( reactorProject != project )
+            {
+                addTestAnalysisCacheMapping( analysisCacheMap, reactorProject );
+            }
+        }
+        List<?> classpathElements;
+        try
+        {
+            classpathElements = project.getTestClasspathElements();
+        }
+        catch ( DependencyResolutionRequiredException e )
+        {
+            throw new MojoExecutionException( "Test classpath resolution failed", e );
+        }
+        Set<File> upstreamAnalysisCacheFiles = new LinkedHashSet<File>();
+        for ( Object classpathElement : classpathElements )
+        {
+            File analysisCacheFile = analysisCacheMap.get( new File( (String) classpathElement ).getAbsoluteFile() );
+            if ( analysisCacheFile != null && !analysisCacheFile.equals( testAnalysisCacheFile ) )
+            {
+                upstreamAnalysisCacheFiles.add( analysisCacheFile );
+            }
+        }
+        List<Analysis> upstreamAnalyses = new ArrayList<Analysis>( upstreamAnalysisCacheFiles.size() );
+        for ( File analysisCacheFile : upstreamAnalysisCacheFiles )
+        {
+            upstreamAnalyses.add( analysisProcessor.readFromFile( analysisCacheFile ) );
+        }
+        AffectedTests affectedTests = new AffectedTests( testAnalysis, upstreamAnalyses );
+
+        boolean[] changed = new boolean[affectedTests.getSourceCount()];
+        boolean resolved; // all changes resolved to analyzed sources
+        try
+        {
+            if ( changedFiles != null )
+            {
+                resolved = markChangedFiles( affectedTests, changed );
+            }
+            else if ( affectedTestsBaseline.isFile() )
+            {
+                resolved = markChangedSinceBaseline( affectedTests, changed );
+            }
+            else
+            {
+                getLog().info( String.format( "No affected tests baseline \"%s\", selecting all tests",
+                                              affectedTestsBaseline.getPath() ) );
+                resolved = false;
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Changed sources reading failed", e );
+        }
+        if ( !resolved )
+        {
+            Arrays.fill( changed, true );
+        }
+        int changedCount = 0;
+        for ( boolean c : changed )
+        {
+            if ( c )
+            {
+                changedCount++;
+            }
+        }
+        Set<String> testClasses = affectedTests.getAffectedTestClasses( changed );
+        getLog().debug( String.format( "Affected tests selection time: %d ms", System.currentTimeMillis() - ts ) );
+
+        try
+        {
+            writeIncludes( testClasses );
+            if ( updateAffectedTestsBaseline )
+            {
+                writeBaseline( affectedTests );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Affected tests writing failed", e );
+        }
+        getLog().info( String.format( "%d test classes affected by %d changed sources (%d sources in %d compilations,"
+                                          + " %d dependencies), written to %s",
+                                      Integer.valueOf( testClasses.size() ), Integer.valueOf( changedCount ),
+                                      Integer.valueOf( affectedTests.getSourceCount() ),
+                                      Integer.valueOf( upstreamAnalyses.size() + 1 ),
+                                      Integer.valueOf( affectedTests.getDependencyCount() ),
+                                      affectedTestsFile.getPath() ) );
+        // tests are skipped only if every change is known not to reach them
+        if ( resolved && testClasses.isEmpty() )
+        {
+            getLog().info( "No affected tests, setting \"skipTests\" property" );
+            project.getProperties().setProperty( "skipTests", "true" );
+        }
+    }
+
+    // paths may be absolute or relative to any parent directory of the source file,
+    // returns false if some path is not an analyzed source (resource, build file, deleted source)
+    private boolean markChangedFiles( AffectedTests affectedTests, boolean[] changed )
+        throws IOException
+    {
+        Map<String, List<Integer>> sourcesByName = new HashMap<String, List<Integer>>();
+        for ( int i = 0; i < affectedTests.getSourceCount(); i++ )
+        {
+            String name = affectedTests.getSourceFile( i ).getName();
+            List<Integer> sources = sourcesByName.get( name );
+            if ( sources == null )
+            {
+                sources = new ArrayList<Integer>( 1 );
+                sourcesByName.put( name, sources );
+            }
+            sources.add( Integer.valueOf( i ) );
+        }
+        boolean resolved = true;
+        for ( String line : readLines( changedFiles ) )
+        {
+            String path = line.trim().replace( '\\', '/' );
+            if ( path.length() == 0 )
+            {
+                continue;
+            }
+            boolean found = false;
+            List<Integer> sources = sourcesByName.get( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+            if ( sources != null )
+            {
+                String suffix = path.startsWith( "/" ) ? path : "/" + path;
+                for ( Integer index : sources )
+                {
+                    String sourcePath = affectedTests.getSourceFile( index.intValue() ).getAbsolutePath();
+                    if ( sourcePath.replace( '\\', '/' ).endsWith( suffix ) )
+                    {
+                        changed[index.intValue()] = true;
+                        found = true;
+                    }
+                }
+            }
+            if ( !found && resolved )
+            {
+                getLog().info( String.format( "Changed file \"%s\" is not an analyzed source, selecting all tests",
+                                              path ) );
+                resolved = false;
+            }
+        }
+        return resolved;
+    }
+
+    // baseline format: "compilationTime<TAB>path" lines for sources, "lastModified<TAB>path" lines for other inputs,
+    // returns false if other inputs changed or some source was deleted
+    private boolean markChangedSinceBaseline( AffectedTests affectedTests, boolean[] changed )
+        throws IOException
+    {
+        Map<String, Long> baseline = new HashMap<String, Long>();
+        for ( String line : readLines( affectedTestsBaseline ) )
+        {
+            int tab = line.indexOf( '\t' );
+            if ( tab > 0 )
+            {
+                try
+                {
+                    baseline.put( line.substring( tab + 1 ), Long.valueOf( line.substring( 0, tab ) ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    getLog().debug( e );
+                }
+            }
+        }
+        for ( int i = 0; i < affectedTests.getSourceCount(); i++ )
+        {
+            Long compilationTime = baseline.remove( affectedTests.getSourceFile( i ).getAbsolutePath() );
+            changed[i] = compilationTime == null || compilationTime.longValue() != affectedTests.getCompilationTime( i );
+        }
+        for ( File file : getOtherInputFiles() )
+        {
+            Long lastModified = baseline.remove( file.getAbsolutePath() );
+            if ( lastModified == null || lastModified.longValue() != file.lastModified() )
+            {
+                getLog().info( String.format( "\"%s\" changed since affected tests baseline, selecting all tests",
+                                              file.getPath() ) );
+                return false;
+            }
+        }
+        if ( !baseline.isEmpty() )
+        {
+            getLog().info( String.format( "\"%s\" removed since affected tests baseline, selecting all tests",
+                                          baseline.keySet().iterator().next() ) );
+            return false;
+        }
+        return true;
+    }
+
+    // inputs of tests other than analyzed sources: project file and resources
+    private List<File> getOtherInputFiles()
+    {
+        List<File> result = new ArrayList<File>();
+        if ( project.getFile() != null )
+        {
+            result.add( project.getFile() );
+        }
+        List<Object> resources = new ArrayList<Object>( project.getBuild().getResources() );
+        resources.addAll( project.getBuild().getTestResources() );
+        for ( Object resource : resources )
+        {
+            String directory = ( (Resource) resource ).getDirectory();
+            if ( directory != null )
+            {
+                addFiles( new File( directory ), result );
+            }
+        }
+        return result;
+    }
+
+    private static void addFiles( File file, List<File> result )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            Arrays.sort( children );
+            for ( File child : children )
+            {
+                addFiles( child, result );
+            }
+        }
+        else if ( file.isFile() )
+        {
+            result.add( file );
+        }
+    }
+
+    private void writeIncludes( Set<String> testClasses )
+        throws IOException
+    {
+        Writer writer = newWriter( affectedTestsFile );
+        try
+        {
+            for ( String testClass : testClasses )
+            {
+                writer.write( testClass.replace( '.', '/' ) );
+                writer.write( ".class\n" );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private void writeBaseline( AffectedTests affectedTests )
+        throws IOException
+    {
+        Writer writer = newWriter( affectedTestsBaseline );
+        try
+        {
+            for ( int i = 0; i < affectedTests.getSourceCount(); i++ )
+            {
+                writeBaselineEntry( writer, affectedTests.getCompilationTime( i ), affectedTests.getSourceFile( i ) );
+            }
+            for ( File file : getOtherInputFiles() )
+            {
+                writeBaselineEntry( writer, file.lastModified(), file );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static void writeBaselineEntry( Writer writer, long time, File file )
+        throws IOException
+    {
+        writer.write( Long.toString( time ) );
+        writer.write( '\t' );
+        writer.write( file.getAbsolutePath() );
+        writer.write( '\n' );
+    }
+
+    private static Writer newWriter( File file )
+        throws IOException
+    {
+        File directory = file.getParentFile();
+        if ( directory != null && !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException( String.format( "Cannot create \"%s\" directory", directory.getPath() ) );
+        }
+        return new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), ENCODING ) );
+    }
+
+    private static List<String> readLines( File file )
+        throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), ENCODING ) );
+        try
+        {
+            String line = reader.readLine();
+            while ( line != null )
+            {
+                result.add( line );
+                line = reader.readLine();
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import com.google.code.sbt.compiler.api.Compilers;
+
+/**
+ * Type check Scala and Java main sources without generating class files.<br>
+ * <br>
+ * Fast feedback goal for development. Scala compiler stops after {@code flatten} phase (before code generation),
+ * Java compiler (in Java only projects) stops after flow analysis. In mixed Scala/Java projects
+ * Java sources are only parsed by Scala compiler, Java method bodies are not checked.<br>
+ * <br>
+ * Type checking state is kept in a separate analysis cache file, so main compilation state
+ * in {@code target/classes} is not affected. Because there are no class files to read signatures
+ * of unchanged sources from, all sources are type checked every time, unless sources, classpath
+ * and compiler options did not change since last successful check (see {@code sourceHashCache}
+ * parameter, always enabled for this goal).
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ * @since 1.0.1
+ */
+@Mojo( name = "check", requiresDependencyResolution = ResolutionScope.COMPILE )
+public class SBTCheckMojo
+    extends AbstractSBTCompileMojo
+{
+    /**
+     * Source inclusion filters for the compiler.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter
+    protected Set<String> includes = new HashSet<String>();
+
+    /**
+     * Source exclusion filters for the compiler.
+     * 
+     * @since 1.0.1
+     */
+    @Parameter
+    protected Set<String> excludes = new HashSet<String>();
+
+    /**
+     * The source directories containing Scala and Java main sources to be checked.
+     */
+    @Parameter( defaultValue = "${project.compileSourceRoots}", readonly = true, required = true )
+    private List<String> compileSourceRoots;
+
+    /**
+     * Project classpath.
+     */
+    @Parameter( defaultValue = "${project.compileClasspathElements}", readonly = true, required = true )
+    private List<String> classpathElements;
+
+    /**
+     * The directory for type checking output (no class files are generated there).
+     * 
+     * @since 1.0.1
+     */
+    @Parameter( defaultValue = "${project.build.directory}/check-classes", required = true )
+    private File checkOutputDirectory;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void internalExecute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        sourceHashCache = true; // type checking is never incremental, skip it if nothing changed
+        super.internalExecute();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<String> getCompileSourceRoots()
+    {
+        // goal can be executed without "addScalaSources" goal
+        List<String> result = new ArrayList<String>( compileSourceRoots );
+        File mainScalaPath = new File( project.getBasedir(), "src/main/scala" );
+        if ( mainScalaPath.isDirectory() && !result.contains( mainScalaPath.getAbsolutePath() ) )
+        {
+            result.add( mainScalaPath.getAbsolutePath() );
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Set<String> getSourceIncludes()
+    {
+        return includes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Set<String> getSourceExcludes()
+    {
+        return excludes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<String> getClasspathElements()
+    {
+        // classes of previous main compilation must not hide checked sources
+        List<String> result = new ArrayList<String>( classpathElements );
+        result.remove( new File( project.getBuild().getOutputDirectory() ).getAbsolutePath() );
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected File getOutputDirectory()
+    {
+        return checkOutputDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected File getAnalysisCacheFile()
+    {
+        return new File( Compilers.getCacheDirectory( checkOutputDirectory ), "check" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Map<File, File> getAnalysisCacheMap()
+    {
+        HashMap<File, File> map = new HashMap<File, File>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            if ( reactorProject != project )
+            {
+                addAnalysisCacheMapping( map, reactorProject );
+            }
+        }
+        return map;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isTypecheckOnly()
+    {
+        return true;
+    }
+
+}
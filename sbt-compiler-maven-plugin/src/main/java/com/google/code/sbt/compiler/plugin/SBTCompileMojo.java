@@ -18,6 +18,7 @@
 package com.google.code.sbt.compiler.plugin;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -89,6 +90,9 @@ public class SBTCompileMojo
     @Parameter( defaultValue = "${project.artifact}", readonly = true, required = true )
     private Artifact projectArtifact;
 
+    // dependency artifacts resolved by SBTCompileReactorMojo, project's resolved artifacts are not used then
+    private Set<Artifact> dependencyArtifacts;
+
     /**
      * {@inheritDoc}
      */
@@ -137,6 +141,15 @@ public class SBTCompileMojo
         return excludes;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Collection<?> getProjectArtifacts()
+    {
+        return dependencyArtifacts != null ? dependencyArtifacts : super.getProjectArtifacts();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -175,18 +188,36 @@ public class SBTCompileMojo
         {
             if ( reactorProject != project )
             {
-                File analysisCacheFile = defaultAnalysisCacheFile( reactorProject );
-                if ( analysisCacheFile.isFile() )
-                {
-                    File reactorProjectArtifactFile = reactorProject.getArtifact().getFile();
-                    if ( reactorProjectArtifactFile != null )
-                    {
-                        map.put( reactorProjectArtifactFile.getAbsoluteFile(), analysisCacheFile.getAbsoluteFile() );
-                    }
-                }
+                addAnalysisCacheMapping( map, reactorProject );
             }
         }
         return map;
     }
 
+    /**
+     * Configures this mojo instance to compile another reactor module.
+     * <br>
+     * <br>
+     * Used by {@link SBTCompileReactorMojo} on its per-module copies.
+     * 
+     * @param module reactor module to compile
+     * @param moduleCompileSourceRoots module's source roots
+     * @param moduleClasspathElements module's compilation classpath
+     * @param moduleArtifacts module's resolved dependency artifacts
+     * @param moduleOutputDirectory directory for compiled classes
+     */
+    void setModule( MavenProject module, List<String> moduleCompileSourceRoots, List<String> moduleClasspathElements,
+                    Set<Artifact> moduleArtifacts, File moduleOutputDirectory )
+    {
+        project = module;
+        compileSourceRoots = moduleCompileSourceRoots;
+        classpathElements = moduleClasspathElements;
+        dependencyArtifacts = moduleArtifacts;
+        outputDirectory = moduleOutputDirectory;
+        projectArtifact = module.getArtifact();
+        // source filters are modified during source scanning, don't share them between modules
+        includes = new HashSet<String>( includes );
+        excludes = new HashSet<String>( excludes );
+    }
+
 }
@@ -0,0 +1,1055 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.filter.ExcludesArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import com.google.code.sbt.compiler.api.Analysis;
+import com.google.code.sbt.compiler.api.Compilers;
+
+/**
+ * Compile Scala and Java main sources of all reactor modules.
+ * <br>
+ * <br>
+ * Aggregator goal compiling all modules in one mojo execution on a shared thread pool.
+ * A module is compiled as soon as all modules it depends on are compiled. When more modules
+ * are ready than free threads, modules on the longest (critical) path of the remaining
+ * module dependency graph are compiled first. Path lengths are computed from module compilation times
+ * recorded in previous executions.
+ * <br>
+ * <br>
+ * Compilers, their classloaders and loaded analyses are shared by all modules.
+ * Module classpaths are resolved by this goal, dependencies on other reactor modules
+ * are replaced by their output directories, so reactor modules do not have to be installed.
+ * <br>
+ * <br>
+ * All modules are compiled with this goal's configuration.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ * @since 1.0.1
+ */
+@Mojo( name = "compileReactor", aggregator = true )
+public class SBTCompileReactorMojo
+    extends SBTCompileMojo
+    implements Cloneable
+{
+    private static final String TIMES_FILE_NAME = "reactor-times";
+
+    private static final String CACHE_FILES_ENCODING = "UTF-8";
+
+    private static final long DEFAULT_MODULE_TIME = 1000L;
+
+    private static final String MONOLITHIC_KEY = "monolithic";
+
+    private static final String MONOLITHIC_OUTPUT_DIRECTORY_NAME = "monolithic-classes";
+
+    private static final String SPLIT_PRODUCTS_FILE_NAME = "split-products";
+
+    /**
+     * Number of threads compiling modules.
+     * <br>
+     * <br>
+     * {@code 0} means the number of available processors.
+     * Messages of modules compiled in parallel may interleave, enable
+     * {@link AbstractSBTCompileMojo#bufferedLogging bufferedLogging} to write them in per module blocks.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.reactorThreads", defaultValue = "0" )
+    protected int reactorThreads;
+
+    /**
+     * Modules compiled together, in one compiler invocation with one incremental compilation analysis.
+     * <br>
+     * <br>
+     * Comma separated list of module {@code artifactId}s or {@code groupId:artifactId}s,
+     * {@code *} means all modules. Useful for reactors with many small modules, where per module
+     * compilation overhead (classpath resolution, analysis loading and storing, compiler startup)
+     * is greater than compilation itself.
+     * <br>
+     * <br>
+     * Classes are compiled to {@code target/monolithic-classes} directory of the execution root project,
+     * then copied to output directories of modules containing their sources. Class files copied
+     * by previous executions and no longer produced are removed from output directories of these modules,
+     * other files in these directories are left intact.
+     * A module not listed here cannot depend on a listed module if another listed module depends on it.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.monolithicModules", defaultValue = "" )
+    protected String monolithicModules;
+
+    // group of monolithically compiled modules, if any
+    private ModuleGroup monolithicGroup;
+
+    // group compiled by this instance, set in per group copies only
+    private ModuleGroup compiledGroup;
+
+    /**
+     * Performs compilation of all reactor modules.
+     *
+     * @throws MojoExecutionException if unexpected problem occurs
+     * @throws MojoFailureException if expected problem (such as compilation failure) occurs
+     */
+    @Override
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        long ts = System.currentTimeMillis();
+        try
+        {
+            compileReactor();
+        }
+        finally
+        {
+            long te = System.currentTimeMillis();
+            getLog().debug( String.format( "Mojo execution time: %d ms", te - ts ) );
+        }
+    }
+
+    private void compileReactor()
+        throws MojoExecutionException, MojoFailureException
+    {
+        Map<String, MavenProject> modulesByKey = new LinkedHashMap<String, MavenProject>();
+        for ( MavenProject reactorProject : reactorProjects )
+        {
+            if ( !"pom".equals( reactorProject.getPackaging() ) )
+            {
+                modulesByKey.put( getKey( reactorProject.getGroupId(), reactorProject.getArtifactId() ),
+                                  reactorProject );
+            }
+        }
+        if ( modulesByKey.isEmpty() )
+        {
+            getLog().info( "No modules to compile" );
+            return;
+        }
+
+        // reactor modules every module depends on, directly or transitively
+        Map<MavenProject, Set<MavenProject>> upstreamModules = new HashMap<MavenProject, Set<MavenProject>>();
+        for ( MavenProject module : modulesByKey.values() )
+        {
+            Set<MavenProject> upstream = new LinkedHashSet<MavenProject>();
+            collectDependencies( Collections.singletonList( module ), modulesByKey, upstream,
+                                 new ArrayList<String>(), new LinkedHashSet<Artifact>() );
+            upstreamModules.put( module, upstream );
+        }
+
+        List<ModuleGroup> groups = new ArrayList<ModuleGroup>();
+        Map<MavenProject, ModuleGroup> groupsByModule = new HashMap<MavenProject, ModuleGroup>();
+        Set<MavenProject> monolithic = getMonolithicModules( modulesByKey );
+        if ( monolithic.size() > 1 )
+        {
+            checkMonolithicModules( monolithic, upstreamModules );
+            monolithicGroup =
+                new ModuleGroup( MONOLITHIC_KEY, new ArrayList<MavenProject>( monolithic ),
+                                 new File( project.getBuild().getDirectory(), MONOLITHIC_OUTPUT_DIRECTORY_NAME ) );
+            groups.add( monolithicGroup );
+            for ( MavenProject module : monolithic )
+            {
+                groupsByModule.put( module, monolithicGroup );
+            }
+        }
+        for ( Map.Entry<String, MavenProject> entry : modulesByKey.entrySet() )
+        {
+            MavenProject module = entry.getValue();
+            if ( !groupsByModule.containsKey( module ) )
+            {
+                ModuleGroup group =
+                    new ModuleGroup( entry.getKey(), Collections.singletonList( module ),
+                                     new File( module.getBuild().getOutputDirectory() ) );
+                groups.add( group );
+                groupsByModule.put( module, group );
+            }
+        }
+        for ( ModuleGroup group : groups )
+        {
+            for ( MavenProject module : group.modules )
+            {
+                for ( MavenProject upstreamModule : upstreamModules.get( module ) )
+                {
+                    ModuleGroup upstreamGroup = groupsByModule.get( upstreamModule );
+                    if ( upstreamGroup != group && group.upstream.add( upstreamGroup ) )
+                    {
+                        upstreamGroup.downstream.add( group );
+                    }
+                }
+            }
+            group.classpath = getClasspath( group, modulesByKey );
+        }
+
+        File timesFile =
+            new File( Compilers.getCacheDirectory( new File( project.getBuild().getOutputDirectory() ) ),
+                      TIMES_FILE_NAME );
+        Map<String, Long> times = readTimes( timesFile );
+        final Map<ModuleGroup, Long> priorities = new HashMap<ModuleGroup, Long>();
+        long defaultTime = getDefaultTime( times );
+        for ( ModuleGroup group : groups )
+        {
+            computePriority( group, times, defaultTime, priorities );
+        }
+        Comparator<ModuleGroup> criticalPathFirst = new Comparator<ModuleGroup>()
+        {
+            @Override
+            public int compare( ModuleGroup g1, ModuleGroup g2 )
+            {
+                return priorities.get( g2 ).compareTo( priorities.get( g1 ) );
+            }
+        };
+
+        int threads = reactorThreads > 0 ? reactorThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.min( threads, groups.size() );
+        getLog().info( String.format( "Compiling %d modules using %d threads", modulesByKey.size(), threads ) );
+
+        Map<ModuleGroup, Integer> waitingFor = new HashMap<ModuleGroup, Integer>();
+        List<ModuleGroup> ready = new ArrayList<ModuleGroup>();
+        for ( ModuleGroup group : groups )
+        {
+            int count = group.upstream.size();
+            waitingFor.put( group, Integer.valueOf( count ) );
+            if ( count == 0 )
+            {
+                ready.add( group );
+            }
+        }
+
+        List<ModuleCompilation> failures = new ArrayList<ModuleCompilation>();
+        int finishedCount = 0;
+        int compiledModulesCount = 0;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            CompletionService<ModuleCompilation> completionService =
+                new ExecutorCompletionService<ModuleCompilation>( executor );
+            int running = 0;
+            while ( true )
+            {
+                // don't start new compilations after a failure, wait for running ones
+                if ( failures.isEmpty() && !ready.isEmpty() )
+                {
+                    Collections.sort( ready, criticalPathFirst );
+                    while ( running < threads && !ready.isEmpty() )
+                    {
+                        ModuleGroup group = ready.remove( 0 );
+                        getLog().debug( String.format( "Scheduling %s, critical path %d ms", group.getName(),
+                                                       priorities.get( group ) ) );
+                        completionService.submit( new ModuleCompilation( getModuleMojo( group ) ) );
+                        running++;
+                    }
+                }
+                if ( running == 0 )
+                {
+                    break;
+                }
+
+                ModuleCompilation compilation = completionService.take().get();
+                running--;
+                finishedCount++;
+                ModuleGroup group = compilation.getGroup();
+                if ( compilation.getFailure() != null )
+                {
+                    failures.add( compilation );
+                }
+                else
+                {
+                    compiledModulesCount += group.modules.size();
+                    getLog().info( String.format( "Compiled %s in %d ms (%d/%d)", group.getName(),
+                                                  compilation.getTime(), finishedCount, groups.size() ) );
+                    // smooth recorded times, so one up to date or full compilation doesn't change the order much
+                    Long previousTime = times.get( group.key );
+                    long time = previousTime != null ? ( previousTime.longValue() + compilation.getTime() ) / 2
+                                    : compilation.getTime();
+                    times.put( group.key, Long.valueOf( time ) );
+                    for ( ModuleGroup downstream : group.downstream )
+                    {
+                        int count = waitingFor.get( downstream ).intValue() - 1;
+                        waitingFor.put( downstream, Integer.valueOf( count ) );
+                        if ( count == 0 )
+                        {
+                            ready.add( downstream );
+                        }
+                    }
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Scala compilation interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new MojoExecutionException( "Scala compilation failed", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        writeTimes( timesFile, times );
+
+        if ( !failures.isEmpty() )
+        {
+            getLog().error( String.format( "%d of %d modules not compiled", modulesByKey.size() - compiledModulesCount,
+                                           modulesByKey.size() ) );
+            for ( ModuleCompilation failure : failures )
+            {
+                getLog().error( String.format( "Compilation of %s failed: %s", failure.getGroup().getName(),
+                                               failure.getFailure().getMessage() ) );
+            }
+            Exception failure = failures.get( 0 ).getFailure();
+            if ( failure instanceof MojoFailureException )
+            {
+                throw (MojoFailureException) failure;
+            }
+            if ( failure instanceof MojoExecutionException )
+            {
+                throw (MojoExecutionException) failure;
+            }
+            throw new MojoExecutionException( "Scala compilation failed", failure );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected File getAnalysisCacheFile()
+    {
+        if ( compiledGroup != null && compiledGroup.isMonolithic() )
+        {
+            return getMonolithicAnalysisCacheFile( compiledGroup );
+        }
+        return super.getAnalysisCacheFile();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Map<File, File> getAnalysisCacheMap()
+    {
+        Map<File, File> map = super.getAnalysisCacheMap();
+        if ( monolithicGroup != null && monolithicGroup != compiledGroup )
+        {
+            // classes of monolithically compiled modules are described by the shared analysis
+            File analysisCacheFile = getMonolithicAnalysisCacheFile( monolithicGroup );
+            if ( analysisCacheFile.isFile() )
+            {
+                for ( MavenProject module : monolithicGroup.modules )
+                {
+                    map.put( new File( module.getBuild().getOutputDirectory() ), analysisCacheFile );
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void processAnalysis( Analysis analysis )
+        throws MojoExecutionException
+    {
+        if ( compiledGroup != null && compiledGroup.isMonolithic() )
+        {
+            splitProducts( analysis );
+        }
+    }
+
+    private void compileGroup()
+        throws MojoExecutionException, MojoFailureException
+    {
+        internalExecute();
+        if ( compiledGroup.isMonolithic() )
+        {
+            for ( MavenProject module : compiledGroup.modules )
+            {
+                File moduleOutputDirectory = new File( module.getBuild().getOutputDirectory() );
+                if ( moduleOutputDirectory.isDirectory() )
+                {
+                    module.getArtifact().setFile( moduleOutputDirectory );
+                }
+            }
+        }
+    }
+
+    // copies compilation products from the shared output directory to output directories of modules
+    // containing their sources, removes class files of removed sources
+    private void splitProducts( Analysis analysis )
+        throws MojoExecutionException
+    {
+        Map<String, MavenProject> modulesBySourceRoot = new LinkedHashMap<String, MavenProject>();
+        Map<MavenProject, Set<String>> moduleProducts = new HashMap<MavenProject, Set<String>>();
+        for ( MavenProject module : compiledGroup.modules )
+        {
+            for ( String sourceRoot : getModuleCompileSourceRoots( module ) )
+            {
+                modulesBySourceRoot.put( new File( sourceRoot ).getAbsolutePath() + File.separator, module );
+            }
+            moduleProducts.put( module, new HashSet<String>() );
+        }
+
+        String groupOutputPath = compiledGroup.outputDirectory.getAbsolutePath() + File.separator;
+        int copiedCount = 0;
+        for ( File sourceFile : analysis.getSourceFiles() )
+        {
+            String sourcePath = sourceFile.getAbsolutePath();
+            MavenProject module = null;
+            for ( Map.Entry<String, MavenProject> entry : modulesBySourceRoot.entrySet() )
+            {
+                if ( sourcePath.startsWith( entry.getKey() ) )
+                {
+                    module = entry.getValue();
+                    break;
+                }
+            }
+            if ( module == null )
+            {
+                getLog().warn( String.format( "Module containing \"%s\" source file not found", sourcePath ) );
+                continue;
+            }
+
+            File moduleOutputDirectory = new File( module.getBuild().getOutputDirectory() );
+            for ( File product : analysis.getProducts( sourceFile ) )
+            {
+                String productPath = product.getAbsolutePath();
+                if ( productPath.startsWith( groupOutputPath ) )
+                {
+                    String relativePath = productPath.substring( groupOutputPath.length() );
+                    moduleProducts.get( module ).add( relativePath );
+                    File target = new File( moduleOutputDirectory, relativePath );
+                    if ( !target.isFile() || target.length() != product.length()
+                        || target.lastModified() != product.lastModified() )
+                    {
+                        try
+                        {
+                            FileUtils.copyFile( product, target );
+                        }
+                        catch ( IOException e )
+                        {
+                            throw new MojoExecutionException( String.format( "Cannot copy \"%s\" class file",
+                                                                             productPath ), e );
+                        }
+                        target.setLastModified( product.lastModified() );
+                        copiedCount++;
+                    }
+                }
+            }
+        }
+
+        // delete only class files copied previously, output directories may contain files of other tools
+        File splitProductsFile =
+            new File( Compilers.getCacheDirectory( compiledGroup.outputDirectory ), SPLIT_PRODUCTS_FILE_NAME );
+        Map<String, Set<String>> previousProducts = readSplitProducts( splitProductsFile );
+        Map<String, Set<String>> currentProducts = new LinkedHashMap<String, Set<String>>();
+        int deletedCount = 0;
+        for ( MavenProject module : compiledGroup.modules )
+        {
+            String key = getKey( module.getGroupId(), module.getArtifactId() );
+            Set<String> products = moduleProducts.get( module );
+            currentProducts.put( key, products );
+            Set<String> previous = previousProducts.get( key );
+            if ( previous != null )
+            {
+                File moduleOutputDirectory = new File( module.getBuild().getOutputDirectory() );
+                for ( String path : previous )
+                {
+                    if ( !products.contains( path ) && new File( moduleOutputDirectory, path ).delete() )
+                    {
+                        deletedCount++;
+                    }
+                }
+            }
+        }
+        writeSplitProducts( splitProductsFile, currentProducts );
+        getLog().debug( String.format( "Compilation products split into %d modules: %d class files copied, %d deleted",
+                                       compiledGroup.modules.size(), copiedCount, deletedCount ) );
+    }
+
+    private SBTCompileReactorMojo getModuleMojo( ModuleGroup group )
+    {
+        SBTCompileReactorMojo result;
+        try
+        {
+            result = (SBTCompileReactorMojo) clone();
+        }
+        catch ( CloneNotSupportedException e )
+        {
+            throw new RuntimeException( e ); // cannot happen, this class implements Cloneable
+        }
+
+        List<String> groupCompileSourceRoots = new ArrayList<String>();
+        for ( MavenProject module : group.modules )
+        {
+            groupCompileSourceRoots.addAll( getModuleCompileSourceRoots( module ) );
+        }
+        result.setModule( group.modules.get( 0 ), groupCompileSourceRoots, new ArrayList<String>( group.classpath ),
+                          group.artifacts, group.outputDirectory );
+        result.compiledGroup = group;
+        return result;
+    }
+
+    private static List<String> getModuleCompileSourceRoots( MavenProject module )
+    {
+        // goal can be executed without "addScalaSources" goal
+        List<String> result = new ArrayList<String>();
+        for ( Object compileSourceRoot : module.getCompileSourceRoots() )
+        {
+            result.add( (String) compileSourceRoot );
+        }
+        File mainScalaPath = new File( module.getBasedir(), "src/main/scala" );
+        if ( mainScalaPath.isDirectory() && !result.contains( mainScalaPath.getAbsolutePath() ) )
+        {
+            result.add( mainScalaPath.getAbsolutePath() );
+        }
+        return result;
+    }
+
+    private Set<MavenProject> getMonolithicModules( Map<String, MavenProject> modulesByKey )
+    {
+        Set<MavenProject> result = new LinkedHashSet<MavenProject>();
+        if ( monolithicModules != null && monolithicModules.trim().length() > 0 )
+        {
+            Set<String> names = new HashSet<String>();
+            for ( String name : monolithicModules.split( "," ) )
+            {
+                names.add( name.trim() );
+            }
+            for ( Map.Entry<String, MavenProject> entry : modulesByKey.entrySet() )
+            {
+                if ( names.contains( "*" ) || names.contains( entry.getKey() )
+                    || names.contains( entry.getValue().getArtifactId() ) )
+                {
+                    result.add( entry.getValue() );
+                }
+            }
+        }
+        return result;
+    }
+
+    // other modules cannot be compiled between monolithically compiled modules
+    private static void checkMonolithicModules( Set<MavenProject> monolithic,
+                                                Map<MavenProject, Set<MavenProject>> upstreamModules )
+        throws MojoExecutionException
+    {
+        for ( Map.Entry<MavenProject, Set<MavenProject>> entry : upstreamModules.entrySet() )
+        {
+            MavenProject module = entry.getKey();
+            if ( monolithic.contains( module ) || Collections.disjoint( entry.getValue(), monolithic ) )
+            {
+                continue;
+            }
+            for ( MavenProject monolithicModule : monolithic )
+            {
+                if ( upstreamModules.get( monolithicModule ).contains( module ) )
+                {
+                    throw new MojoExecutionException(
+                        String.format( "Module %s depends on monolithically compiled modules and module %s depends on it,"
+                                           + " add it to monolithically compiled modules", module.getName(),
+                                       monolithicModule.getName() ) );
+                }
+            }
+        }
+    }
+
+    // output directories of upstream reactor modules and resolved external dependencies
+    private List<String> getClasspath( ModuleGroup group, Map<String, MavenProject> modulesByKey )
+        throws MojoExecutionException
+    {
+        List<String> result = new ArrayList<String>();
+        result.add( group.outputDirectory.getAbsolutePath() );
+        Set<Artifact> externalArtifacts = new LinkedHashSet<Artifact>();
+        try
+        {
+            List<String> upstreamOutputDirectories = new ArrayList<String>();
+            collectDependencies( group.modules, modulesByKey, new LinkedHashSet<MavenProject>(),
+                                 upstreamOutputDirectories, externalArtifacts );
+            for ( MavenProject module : group.modules )
+            {
+                upstreamOutputDirectories.remove( module.getBuild().getOutputDirectory() );
+            }
+            result.addAll( upstreamOutputDirectories );
+            Set<Artifact> resolvedArtifacts =
+                getAllDependencies( externalArtifacts, getManagedVersions( group ),
+                                    new ScopeArtifactFilter( Artifact.SCOPE_COMPILE ) );
+            group.artifacts = resolvedArtifacts;
+            for ( Artifact artifact : resolvedArtifacts )
+            {
+                if ( artifact.getFile() != null )
+                {
+                    result.add( artifact.getFile().getAbsolutePath() );
+                }
+            }
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            throw new MojoExecutionException( String.format( "Dependencies resolution of %s failed",
+                                                             group.getName() ), e );
+        }
+        catch ( ArtifactNotFoundException e )
+        {
+            throw new MojoExecutionException( String.format( "Dependencies resolution of %s failed",
+                                                             group.getName() ), e );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            throw new MojoExecutionException( String.format( "Dependencies resolution of %s failed",
+                                                             group.getName() ), e );
+        }
+        return result;
+    }
+
+    private void collectDependencies( List<MavenProject> modules, Map<String, MavenProject> modulesByKey,
+                                      Set<MavenProject> upstream, List<String> classpath,
+                                      Set<Artifact> externalArtifacts )
+        throws MojoExecutionException
+    {
+        for ( MavenProject module : modules )
+        {
+            try
+            {
+                collectDependencies( module, true, Collections.<String>emptyList(), modulesByKey, upstream, classpath,
+                                     externalArtifacts );
+            }
+            catch ( InvalidVersionSpecificationException e )
+            {
+                throw new MojoExecutionException( String.format( "Dependencies resolution of module %s failed",
+                                                                 module.getName() ), e );
+            }
+        }
+    }
+
+    // exclusions declared on dependencies on reactor modules apply to dependencies of these modules
+    private void collectDependencies( MavenProject module, boolean direct, List<String> exclusions,
+                                      Map<String, MavenProject> modulesByKey, Set<MavenProject> upstream,
+                                      List<String> classpath, Set<Artifact> externalArtifacts )
+        throws InvalidVersionSpecificationException
+    {
+        for ( Object dependencyObject : module.getDependencies() )
+        {
+            Dependency dependency = (Dependency) dependencyObject;
+            String scope = dependency.getScope() != null ? dependency.getScope() : Artifact.SCOPE_COMPILE;
+            boolean compileScope =
+                Artifact.SCOPE_COMPILE.equals( scope ) || Artifact.SCOPE_SYSTEM.equals( scope )
+                    || direct && Artifact.SCOPE_PROVIDED.equals( scope );
+            if ( !compileScope || !direct && dependency.isOptional()
+                || exclusions.contains( getKey( dependency.getGroupId(), dependency.getArtifactId() ) ) )
+            {
+                continue;
+            }
+
+            List<String> dependencyExclusions = new ArrayList<String>( exclusions );
+            for ( Object exclusionObject : dependency.getExclusions() )
+            {
+                Exclusion exclusion = (Exclusion) exclusionObject;
+                dependencyExclusions.add( getKey( exclusion.getGroupId(), exclusion.getArtifactId() ) );
+            }
+            MavenProject upstreamModule =
+                dependency.getClassifier() == null
+                    ? modulesByKey.get( getKey( dependency.getGroupId(), dependency.getArtifactId() ) ) : null;
+            if ( upstreamModule != null )
+            {
+                if ( upstream.add( upstreamModule ) )
+                {
+                    classpath.add( upstreamModule.getBuild().getOutputDirectory() );
+                    collectDependencies( upstreamModule, false, dependencyExclusions, modulesByKey, upstream,
+                                         classpath, externalArtifacts );
+                }
+            }
+            else
+            {
+                externalArtifacts.add( createDependencyArtifact( dependency, scope, dependencyExclusions ) );
+            }
+        }
+    }
+
+    // dependency management of the group's modules, the first module managing a dependency wins
+    private Map<String, Artifact> getManagedVersions( ModuleGroup group )
+        throws InvalidVersionSpecificationException
+    {
+        Map<String, Artifact> result = new HashMap<String, Artifact>();
+        for ( MavenProject module : group.modules )
+        {
+            DependencyManagement dependencyManagement = module.getDependencyManagement();
+            if ( dependencyManagement != null )
+            {
+                for ( Object dependencyObject : dependencyManagement.getDependencies() )
+                {
+                    Dependency dependency = (Dependency) dependencyObject;
+                    if ( dependency.getVersion() != null && !result.containsKey( dependency.getManagementKey() ) )
+                    {
+                        List<String> exclusions = new ArrayList<String>( dependency.getExclusions().size() );
+                        for ( Object exclusionObject : dependency.getExclusions() )
+                        {
+                            Exclusion exclusion = (Exclusion) exclusionObject;
+                            exclusions.add( getKey( exclusion.getGroupId(), exclusion.getArtifactId() ) );
+                        }
+                        result.put( dependency.getManagementKey(),
+                                    createDependencyArtifact( dependency, dependency.getScope(), exclusions ) );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private Artifact createDependencyArtifact( Dependency dependency, String scope, List<String> exclusions )
+        throws InvalidVersionSpecificationException
+    {
+        Artifact artifact =
+            factory.createDependencyArtifact( dependency.getGroupId(), dependency.getArtifactId(),
+                                              VersionRange.createFromVersionSpec( dependency.getVersion() ),
+                                              dependency.getType(), dependency.getClassifier(), scope,
+                                              dependency.isOptional() );
+        if ( Artifact.SCOPE_SYSTEM.equals( scope ) )
+        {
+            artifact.setFile( new File( dependency.getSystemPath() ) );
+        }
+        if ( !exclusions.isEmpty() )
+        {
+            artifact.setDependencyFilter( new ExcludesArtifactFilter( exclusions ) );
+        }
+        return artifact;
+    }
+
+    // compilation time of the group and all groups depending on it on the longest path
+    private long computePriority( ModuleGroup group, Map<String, Long> times, long defaultTime,
+                                  Map<ModuleGroup, Long> priorities )
+    {
+        Long result = priorities.get( group );
+        if ( result == null )
+        {
+            long downstreamPath = 0L;
+            for ( ModuleGroup downstream : group.downstream )
+            {
+                downstreamPath = Math.max( downstreamPath, computePriority( downstream, times, defaultTime, priorities ) );
+            }
+            Long time = times.get( group.key );
+            result = Long.valueOf( ( time != null ? time.longValue() : defaultTime ) + downstreamPath );
+            priorities.put( group, result );
+        }
+        return result.longValue();
+    }
+
+    // average recorded time is used for modules compiled for the first time
+    private static long getDefaultTime( Map<String, Long> times )
+    {
+        if ( times.isEmpty() )
+        {
+            return DEFAULT_MODULE_TIME;
+        }
+        long sum = 0L;
+        for ( Long time : times.values() )
+        {
+            sum += time.longValue();
+        }
+        return sum / times.size();
+    }
+
+    // times file format: "groupId:artifactId<TAB>time" lines, times in milliseconds
+    private Map<String, Long> readTimes( File timesFile )
+    {
+        Map<String, Long> result = new HashMap<String, Long>();
+        if ( timesFile.isFile() )
+        {
+            try
+            {
+                BufferedReader reader =
+                    new BufferedReader( new InputStreamReader( new FileInputStream( timesFile ),
+                                                               CACHE_FILES_ENCODING ) );
+                try
+                {
+                    String line = reader.readLine();
+                    while ( line != null )
+                    {
+                        int tab = line.indexOf( '\t' );
+                        if ( tab > 0 )
+                        {
+                            try
+                            {
+                                result.put( line.substring( 0, tab ), Long.valueOf( line.substring( tab + 1 ) ) );
+                            }
+                            catch ( NumberFormatException e )
+                            {
+                                // ignore invalid line
+                            }
+                        }
+                        line = reader.readLine();
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( String.format( "Module compilation times reading error: %s", e.getMessage() ) );
+            }
+        }
+        return result;
+    }
+
+    private void writeTimes( File timesFile, Map<String, Long> times )
+    {
+        File timesDirectory = timesFile.getParentFile();
+        if ( !timesDirectory.isDirectory() && !timesDirectory.mkdirs() && !timesDirectory.isDirectory() )
+        {
+            getLog().warn( String.format( "Cannot create \"%s\" directory", timesDirectory.getAbsolutePath() ) );
+            return;
+        }
+        try
+        {
+            Writer writer =
+                new BufferedWriter( new OutputStreamWriter( new FileOutputStream( timesFile ), CACHE_FILES_ENCODING ) );
+            try
+            {
+                for ( Map.Entry<String, Long> entry : times.entrySet() )
+                {
+                    writer.write( entry.getKey() + "\t" + entry.getValue() + "\n" );
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( String.format( "Module compilation times writing error: %s", e.getMessage() ) );
+        }
+    }
+
+    // split products file format: "groupId:artifactId<TAB>relative class file path" lines
+    private Map<String, Set<String>> readSplitProducts( File splitProductsFile )
+    {
+        Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        if ( splitProductsFile.isFile() )
+        {
+            try
+            {
+                BufferedReader reader =
+                    new BufferedReader( new InputStreamReader( new FileInputStream( splitProductsFile ),
+                                                               CACHE_FILES_ENCODING ) );
+                try
+                {
+                    String line = reader.readLine();
+                    while ( line != null )
+                    {
+                        int tab = line.indexOf( '\t' );
+                        if ( tab > 0 )
+                        {
+                            String key = line.substring( 0, tab );
+                            Set<String> products = result.get( key );
+                            if ( products == null )
+                            {
+                                products = new HashSet<String>();
+                                result.put( key, products );
+                            }
+                            products.add( line.substring( tab + 1 ) );
+                        }
+                        line = reader.readLine();
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( String.format( "Split compilation products reading error: %s", e.getMessage() ) );
+            }
+        }
+        return result;
+    }
+
+    private void writeSplitProducts( File splitProductsFile, Map<String, Set<String>> products )
+        throws MojoExecutionException
+    {
+        try
+        {
+            Writer writer =
+                new BufferedWriter( new OutputStreamWriter( new FileOutputStream( splitProductsFile ),
+                                                            CACHE_FILES_ENCODING ) );
+            try
+            {
+                for ( Map.Entry<String, Set<String>> entry : products.entrySet() )
+                {
+                    for ( String path : entry.getValue() )
+                    {
+                        writer.write( entry.getKey() + "\t" + path + "\n" );
+                    }
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // without the list, class files copied now would never be deleted
+            throw new MojoExecutionException( "Split compilation products writing error", e );
+        }
+    }
+
+    private static File getMonolithicAnalysisCacheFile( ModuleGroup group )
+    {
+        return new File( Compilers.getCacheDirectory( group.outputDirectory ), "compile" );
+    }
+
+    private static String getKey( String groupId, String artifactId )
+    {
+        return groupId + ":" + artifactId;
+    }
+
+    private static class ModuleCompilation
+        implements Callable<ModuleCompilation>
+    {
+        private final SBTCompileReactorMojo mojo;
+
+        private long time;
+
+        private Exception failure;
+
+        ModuleCompilation( SBTCompileReactorMojo mojo )
+        {
+            this.mojo = mojo;
+        }
+
+        @Override
+        public ModuleCompilation call()
+        {
+            long ts = System.currentTimeMillis();
+            try
+            {
+                mojo.compileGroup();
+            }
+            catch ( MojoExecutionException e )
+            {
+                failure = e;
+            }
+            catch ( MojoFailureException e )
+            {
+                failure = e;
+            }
+            catch ( RuntimeException e )
+            {
+                failure = e;
+            }
+            time = System.currentTimeMillis() - ts;
+            return this;
+        }
+
+        ModuleGroup getGroup()
+        {
+            return mojo.compiledGroup;
+        }
+
+        long getTime()
+        {
+            return time;
+        }
+
+        Exception getFailure()
+        {
+            return failure;
+        }
+    }
+
+    private static class ModuleGroup
+    {
+        private final String key;
+
+        private final List<MavenProject> modules;
+
+        private final File outputDirectory;
+
+        private final Set<ModuleGroup> upstream = new LinkedHashSet<ModuleGroup>();
+
+        private final List<ModuleGroup> downstream = new ArrayList<ModuleGroup>();
+
+        private List<String> classpath;
+
+        private Set<Artifact> artifacts;
+
+        ModuleGroup( String key, List<MavenProject> modules, File outputDirectory )
+        {
+            this.key = key;
+            this.modules = modules;
+            this.outputDirectory = outputDirectory;
+        }
+
+        boolean isMonolithic()
+        {
+            return modules.size() > 1;
+        }
+
+        String getName()
+        {
+            return isMonolithic() ? String.format( "%d monolithically compiled modules", modules.size() )
+                            : "module " + modules.get( 0 ).getName();
+        }
+    }
+
+}
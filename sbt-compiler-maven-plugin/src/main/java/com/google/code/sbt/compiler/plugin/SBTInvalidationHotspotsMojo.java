@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.google.code.sbt.compiler.api.Analysis;
+
+/**
+ * Rank main sources by invalidation fan-out.<br>
+ * <br>
+ * Reads incremental compilation analysis of the last compilation and computes, for every source,
+ * the number of sources transitively depending on it by member reference and by inheritance
+ * (blast radius). Sources with the largest blast radius trigger the largest incremental recompilations
+ * when their API changes. The ranking is written to a text report file.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ * @since 1.0.1
+ */
+@Mojo( name = "invalidationHotspots" )
+public class SBTInvalidationHotspotsMojo
+    extends AbstractSBTMojo
+{
+    /**
+     * Number of sources with the largest blast radius logged.
+     */
+    private static final int LOGGED_HOTSPOTS_COUNT = 10;
+
+    /**
+     * Invalidation hotspots report file.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.hotspotsReportFile", defaultValue = "${project.build.directory}/sbt-invalidation-hotspots.txt" )
+    protected File hotspotsReportFile;
+
+    /**
+     * Number of sources with the largest blast radius written to the report, {@code 0} means all sources.
+     *
+     * @since 1.0.1
+     */
+    @Parameter( property = "sbt.hotspotsCount", defaultValue = "50" )
+    protected int hotspotsCount;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void internalExecute()
+        throws MojoExecutionException
+    {
+        File analysisCacheFile = defaultAnalysisCacheFile( project );
+        if ( !analysisCacheFile.isFile() )
+        {
+            getLog().info( String.format( "No analysis cache file \"%s\", compile main sources first",
+                                          analysisCacheFile.getPath() ) );
+            return;
+        }
+
+        long ts = System.currentTimeMillis();
+        Analysis analysis = getAnalysisProcessor().readFromFile( analysisCacheFile );
+        InvalidationHotspots hotspots = new InvalidationHotspots( analysis );
+        Integer[] ranking = hotspots.getRanking();
+        getLog().debug( String.format( "Invalidation fan-out computation time: %d ms",
+                                       System.currentTimeMillis() - ts ) );
+
+        int count = hotspotsCount > 0 ? Math.min( hotspotsCount, ranking.length ) : ranking.length;
+        try
+        {
+            writeReport( hotspots, ranking, count );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Invalidation hotspots report writing failed", e );
+        }
+
+        getLog().info( String.format( "%d sources, %d member reference and %d inheritance dependencies",
+                                      Integer.valueOf( hotspots.getSourceCount() ),
+                                      Integer.valueOf( hotspots.getMemberRefDependencyCount() ),
+                                      Integer.valueOf( hotspots.getInheritanceDependencyCount() ) ) );
+        for ( int i = 0; i < Math.min( count, LOGGED_HOTSPOTS_COUNT ); i++ )
+        {
+            int index = ranking[i].intValue();
+            getLog().info( String.format( "  %d (%d by inheritance) sources depend on %s",
+                                          Integer.valueOf( hotspots.getMemberRefRadius( index ) ),
+                                          Integer.valueOf( hotspots.getInheritanceRadius( index ) ),
+                                          getRelativePath( hotspots.getSourceFile( index ) ) ) );
+        }
+        getLog().info( String.format( "Invalidation hotspots report written to %s", hotspotsReportFile.getPath() ) );
+    }
+
+    private void writeReport( InvalidationHotspots hotspots, Integer[] ranking, int count )
+        throws IOException
+    {
+        File reportDirectory = hotspotsReportFile.getParentFile();
+        if ( reportDirectory != null && !reportDirectory.isDirectory() && !reportDirectory.mkdirs() )
+        {
+            throw new IOException( String.format( "Cannot create \"%s\" directory", reportDirectory.getPath() ) );
+        }
+        Writer writer =
+            new BufferedWriter( new OutputStreamWriter( new FileOutputStream( hotspotsReportFile ), "UTF-8" ) );
+        try
+        {
+            writer.write( String.format( "Invalidation hotspots of %d sources (%d member reference and %d inheritance"
+                + " dependencies)%n", Integer.valueOf( hotspots.getSourceCount() ),
+                                         Integer.valueOf( hotspots.getMemberRefDependencyCount() ),
+                                         Integer.valueOf( hotspots.getInheritanceDependencyCount() ) ) );
+            writer.write( String.format( "Blast radius is the number of sources transitively depending"
+                + " on the source.%n%n" ) );
+            writer.write( String.format( "%6s %10s %12s %8s  %s%n", "rank", "memberRef", "inheritance", "direct",
+                                         "source" ) );
+            for ( int i = 0; i < count; i++ )
+            {
+                int index = ranking[i].intValue();
+                writer.write( String.format( "%6d %10d %12d %8d  %s%n", Integer.valueOf( i + 1 ),
+                                             Integer.valueOf( hotspots.getMemberRefRadius( index ) ),
+                                             Integer.valueOf( hotspots.getInheritanceRadius( index ) ),
+                                             Integer.valueOf( hotspots.getMemberRefDependents( index ) ),
+                                             getRelativePath( hotspots.getSourceFile( index ) ) ) );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private String getRelativePath( File sourceFile )
+    {
+        String basedirPath = project.getBasedir().getAbsolutePath() + File.separator;
+        String path = sourceFile.getAbsolutePath();
+        return path.startsWith( basedirPath ) ? path.substring( basedirPath.length() ) : path;
+    }
+
+}
@@ -24,7 +24,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -163,31 +162,10 @@ public class SBTTestCompileMojo
         HashMap<File, File> map = new HashMap<File, File>();
         for ( MavenProject reactorProject : reactorProjects )
         {
-            File analysisCacheFile = defaultAnalysisCacheFile( reactorProject );
-            if ( analysisCacheFile.isFile() )
-            {
-                File reactorProjectArtifactFile = reactorProject.getArtifact().getFile();
-                if ( reactorProjectArtifactFile != null )
-                {
-                    map.put( reactorProjectArtifactFile.getAbsoluteFile(), analysisCacheFile.getAbsoluteFile() );
-                }
-            }
-            
+            addAnalysisCacheMapping( map, reactorProject );
             if ( reactorProject != project )
             {
-                File testAnalysisCacheFile = defaultTestAnalysisCacheFile( reactorProject );
-                if ( testAnalysisCacheFile.isFile() )
-                {
-                    List<Artifact> reactorProjectattachedArtifacts = reactorProject.getAttachedArtifacts();
-                    for ( Artifact artifact: reactorProjectattachedArtifacts )
-                    {
-                        if ( "tests".equals( artifact.getClassifier() ) )
-                        {
-                            map.put( artifact.getFile().getAbsoluteFile(), testAnalysisCacheFile.getAbsoluteFile() );
-                            break;
-                        }
-                    }
-                }
+                addTestAnalysisCacheMapping( map, reactorProject );
             }
         }
         return map;
@@ -17,9 +17,17 @@
 
 package com.google.code.sbt.compiler.plugin;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.code.sbt.compiler.api.SelectiveSourcePositionMapper;
 import com.google.code.sbt.compiler.api.SourcePosition;
 import com.google.code.sbt.compiler.api.SourcePositionMapper;
 
@@ -27,7 +35,11 @@ import com.google.code.sbt.compiler.api.SourcePositionMapper;
  * Wwrapper for a collection of source position mappers.<br>
  * <br>
  * When mapping the position it iterates over contained mappers until one of them returns
- * not {@code null} result.
+ * not {@code null} result.<br>
+ * <br>
+ * Mappers implementing {@link SelectiveSourcePositionMapper} interface are used only for files
+ * with supported name suffixes. Mappers applicable for files with given extension are indexed,
+ * so positions in other files do not reach them at all.
  *
  * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
  */
@@ -37,6 +49,10 @@ public class SourcePositionMapperCollection
 
     private Collection<SourcePositionMapper> mappers;
 
+    private List<Candidate> candidates;
+
+    private Map<String, List<Candidate>> candidatesByExtension = new HashMap<String, List<Candidate>>();
+
     /**
      * Creates source position mappers collection.
      * 
@@ -45,6 +61,16 @@ public class SourcePositionMapperCollection
     public SourcePositionMapperCollection( Collection<SourcePositionMapper> mappers )
     {
         this.mappers = mappers;
+        this.candidates = new ArrayList<Candidate>( mappers.size() );
+        for ( SourcePositionMapper mapper : mappers )
+        {
+            Collection<String> suffixes = null;
+            if ( mapper instanceof SelectiveSourcePositionMapper )
+            {
+                suffixes = ( (SelectiveSourcePositionMapper) mapper ).getSupportedFileNameSuffixes();
+            }
+            candidates.add( new Candidate( mapper, suffixes ) );
+        }
     }
 
     /**
@@ -66,15 +92,117 @@ public class SourcePositionMapperCollection
     public SourcePosition map( SourcePosition sp ) throws IOException
     {
         SourcePosition result = null;
-        for ( SourcePositionMapper mapper: mappers )
+        File file = sp.getFile();
+        if ( file == null )
+        {
+            return null;
+        }
+        String fileName = file.getName();
+        for ( Candidate candidate : getCandidates( getExtension( fileName ) ) )
         {
-            result = mapper.map( sp );
-            if ( result != null )
+            if ( candidate.supports( fileName ) )
             {
-                break;
+                result = candidate.mapper.map( sp );
+                if ( result != null )
+                {
+                    candidate.hits++;
+                    break;
+                }
+                candidate.misses++;
             }
         }
         return result;
     }
 
-}
\ No newline at end of file
+    /**
+     * Logs numbers of successful and unsuccessful mapping attempts of every mapper in <b>debug</b> level.
+     * 
+     * @param log Maven logger
+     */
+    public void logStatistics( Log log )
+    {
+        if ( log.isDebugEnabled() )
+        {
+            for ( Candidate candidate : candidates )
+            {
+                log.debug( String.format( "Source position mapper %s: %d hits, %d misses",
+                                          candidate.mapper.getClass().getName(), candidate.hits, candidate.misses ) );
+            }
+        }
+    }
+
+    // mappers applicable for files with given extension, in original order
+    private List<Candidate> getCandidates( String extension )
+    {
+        List<Candidate> result = candidatesByExtension.get( extension );
+        if ( result == null )
+        {
+            result = new ArrayList<Candidate>();
+            for ( Candidate candidate : candidates )
+            {
+                if ( candidate.supportsExtension( extension ) )
+                {
+                    result.add( candidate );
+                }
+            }
+            candidatesByExtension.put( extension, result );
+        }
+        return result;
+    }
+
+    private static String getExtension( String fileName )
+    {
+        int dot = fileName.lastIndexOf( '.' );
+        return dot >= 0 ? fileName.substring( dot + 1 ) : "";
+    }
+
+    private static class Candidate
+    {
+        private final SourcePositionMapper mapper;
+
+        private final Collection<String> suffixes; // null if all files are supported
+
+        private int hits;
+
+        private int misses;
+
+        Candidate( SourcePositionMapper mapper, Collection<String> suffixes )
+        {
+            this.mapper = mapper;
+            this.suffixes = suffixes;
+        }
+
+        boolean supportsExtension( String extension )
+        {
+            if ( suffixes == null )
+            {
+                return true;
+            }
+            for ( String suffix : suffixes )
+            {
+                if ( suffix.indexOf( '.' ) < 0 || getExtension( suffix ).equals( extension ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean supports( String fileName )
+        {
+            if ( suffixes == null )
+            {
+                return true;
+            }
+            for ( String suffix : suffixes )
+            {
+                if ( fileName.endsWith( suffix ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -18,6 +18,7 @@
 package com.google.code.sbt.compiler.sbt012;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Set;
 
 import scala.collection.JavaConversions;
@@ -87,6 +88,44 @@ public class SBT012Analysis
         return JavaConversions.setAsJavaSet( analysis.relations().products( sourceFile ) );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<File> getMemberRefDependencies( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( analysis.relations().internalSrcDeps( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * SBT 0.12.x does not track dependencies by inheritance separately, empty set is returned.
+     */
+    @Override
+    public Set<File> getInheritanceDependencies( File sourceFile )
+    {
+        return Collections.emptySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getExternalDependencies( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( analysis.relations().externalDeps( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getClassNames( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( analysis.relations().classNames( sourceFile ) );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -54,9 +54,9 @@ public class SBT012Compiler
     extends AbstractCompiler
 {
     /**
-     * SBT compilation order.
+     * Default SBT compilation order.
      */
-    private static final String COMPILE_ORDER = "mixed";
+    private static final String DEFAULT_COMPILE_ORDER = "mixed";
 
     /**
      * {@inheritDoc}
@@ -93,7 +93,7 @@ public class SBT012Compiler
         throws CompilerException
     {
         CompilerLogger logger = configuration.getLogger();
-        SBT012Logger sbtLogger = new SBT012Logger( logger );
+        SBT012Logger sbtLogger = new SBT012Logger( logger, configuration.getSuppressedWarnings() );
         Setup setup =
             Setup.create( configuration.getScalaCompilerFile(), configuration.getScalaLibraryFile(),
                           configuration.getScalaExtraJarFiles(), configuration.getXsbtiFile(),
@@ -104,20 +104,69 @@ public class SBT012Compiler
         }
         Compiler compiler = Compiler.create( setup, sbtLogger );
 
+        String compileOrder = configuration.getCompileOrder();
+        if ( compileOrder == null )
+        {
+            compileOrder = SBT012Compiler.DEFAULT_COMPILE_ORDER;
+        }
+        else if ( "auto".equals( compileOrder ) )
+        {
+            logger.warn( "Automatic compile order selection not supported" );
+            compileOrder = SBT012Compiler.DEFAULT_COMPILE_ORDER;
+        }
+
         Inputs inputs =
             Inputs.create( configuration.getClasspathFiles(), configuration.getSourceFiles(),
                            configuration.getOutputDirectory(), resolveScalacOptions( configuration ),
                            resolveJavacOptions( configuration ), configuration.getAnalysisCacheFile(),
-                           configuration.getAnalysisCacheMap(), SBT012Compiler.COMPILE_ORDER,
+                           configuration.getAnalysisCacheMap(), compileOrder,
                            /* getIncOptions(), */logger.isDebugEnabled() /* mirrorAnalysisCache */ );
         if ( configuration.getSourcePositionMapper() != null )
         {
             logger.warn( "Source position mappers not supported" );
         }
+        if ( configuration.getAnalysisRelocationRoots() != null && !configuration.getAnalysisRelocationRoots().isEmpty() )
+        {
+            logger.warn( "Relocatable analysis cache files not supported" );
+        }
+        if ( configuration.isSourceHashCache() )
+        {
+            logger.warn( "Source hash cache not supported" );
+        }
+        if ( configuration.isClasspathIndexCache() )
+        {
+            logger.warn( "Classpath index cache not supported" );
+        }
+        if ( configuration.getProblemListener() != null )
+        {
+            logger.warn( "Compilation problem listeners not supported" );
+        }
+        if ( configuration.isAggregateWarnings() )
+        {
+            logger.warn( "Warnings aggregation not supported" );
+        }
+        if ( configuration.isReplayWarnings() )
+        {
+            logger.warn( "Warnings replay not supported" );
+        }
+        if ( configuration.getFailFastErrors() > 0 || configuration.getCompileTimeout() > 0
+            || configuration.getCancellation() != null )
+        {
+            logger.warn( "Compilation cancellation not supported" );
+        }
+        if ( configuration.isTypecheckOnly() )
+        {
+            logger.warn( "Type checking only not supported, class files will be generated" );
+        }
+        if ( configuration.isInvalidationReport() )
+        {
+            logger.warn( "Invalidation report not supported" );
+        }
         if ( logger.isDebugEnabled() )
         {
             Inputs.debug( inputs, sbtLogger );
         }
+        acquireCompilationPermit( configuration );
 
         try
         {
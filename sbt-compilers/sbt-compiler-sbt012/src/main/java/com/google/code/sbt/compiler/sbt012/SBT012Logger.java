@@ -17,6 +17,10 @@
 
 package com.google.code.sbt.compiler.sbt012;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import com.google.code.sbt.compiler.api.CompilerLogger;
 
 import xsbti.F0;
@@ -36,6 +40,8 @@ public class SBT012Logger
 
     private StringBuilder errors = new StringBuilder();
 
+    private List<Pattern> suppressedWarnings = new ArrayList<Pattern>();
+
     /**
      * Creates SBT <a href="http://www.scala-sbt.org/0.12.4/api/index.html#xsbti.Logger">xsbti.Logger</a>
      * wrapper around {@link CompilerLogger} delegate.
@@ -43,8 +49,27 @@ public class SBT012Logger
      * @param compilerLogger {@link CompilerLogger} delegate
      */
     public SBT012Logger( CompilerLogger compilerLogger )
+    {
+        this( compilerLogger, null );
+    }
+
+    /**
+     * Creates SBT <a href="http://www.scala-sbt.org/0.12.4/api/index.html#xsbti.Logger">xsbti.Logger</a>
+     * wrapper around {@link CompilerLogger} delegate suppressing warnings matching given regular expressions.
+     * 
+     * @param compilerLogger {@link CompilerLogger} delegate
+     * @param suppressedWarnings regular expressions of suppressed warning messages, may be {@code null}
+     */
+    public SBT012Logger( CompilerLogger compilerLogger, List<String> suppressedWarnings )
     {
         this.compilerLogger = compilerLogger;
+        if ( suppressedWarnings != null )
+        {
+            for ( String suppressedWarning : suppressedWarnings )
+            {
+                this.suppressedWarnings.add( Pattern.compile( suppressedWarning ) );
+            }
+        }
     }
 
     /**
@@ -75,7 +100,11 @@ public class SBT012Logger
     {
         if ( compilerLogger.isWarnEnabled() )
         {
-            compilerLogger.warn( msg.apply() );
+            String msgString = msg.apply();
+            if ( !isSuppressed( msgString ) )
+            {
+                compilerLogger.warn( msgString );
+            }
         }
     }
 
@@ -124,6 +153,18 @@ public class SBT012Logger
         }
     }
 
+    private boolean isSuppressed( String msg )
+    {
+        for ( Pattern suppressedWarning : suppressedWarnings )
+        {
+            if ( suppressedWarning.matcher( msg ).find() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     String[] getConsoleErrorLines()
     {
         return errors.toString().split( "\n" );
@@ -41,6 +41,7 @@ public class SBT013Analysis
     implements Analysis
 {
     private sbt.inc.Analysis analysis;
+    private File analysisFile;
     private Stamps stamps;
 
     /**
@@ -54,6 +55,18 @@ public class SBT013Analysis
         this.analysis = analysis;
     }
 
+    /**
+     * Creates {@link Analysis} wrapper around
+     * SBT <a href="http://www.scala-sbt.org/0.13.15/api/index.html#sbt.inc.Analysis">sbt.inc.Analysis</a> delegate
+     * read from analysis cache file when first needed.
+     * 
+     * @param analysisCacheFile analysis cache file
+     */
+    public SBT013Analysis( File analysisCacheFile )
+    {
+        this.analysisFile = analysisCacheFile;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -63,11 +76,13 @@ public class SBT013Analysis
         if ( stamps != null ) // stamps were modified, merge now
         {
             analysis =
-                analysis.copy( stamps, analysis.apis(), analysis.relations(), analysis.infos(), analysis.compilations() );
+                getAnalysis().copy( stamps, analysis.apis(), analysis.relations(), analysis.infos(), analysis.compilations() );
             stamps = null;
         }
         AnalysisStore analysisStore = Compiler.analysisStore( analysisCacheFile );
-        analysisStore.set( analysis, analysisStore.get().get()._2 /* compileSetup */ );
+        analysisStore.set( getAnalysis(), analysisStore.get().get()._2 /* compileSetup */ );
+        // relocation roots are not known here, relocatable copy will be recreated during next compilation
+        SBT013AnalysisRelocator.invalidate( analysisCacheFile );
     }
 
     /**
@@ -76,7 +91,7 @@ public class SBT013Analysis
     @Override
     public Set<File> getSourceFiles()
     {
-        return JavaConversions.setAsJavaSet( analysis.apis().internal().keySet() );
+        return JavaConversions.setAsJavaSet( getAnalysis().apis().internal().keySet() );
     }
 
     /**
@@ -85,7 +100,7 @@ public class SBT013Analysis
     @Override
     public long getCompilationTime( File sourceFile )
     {
-        return analysis.apis().internalAPI( sourceFile ).compilation().startTime();
+        return getAnalysis().apis().internalAPI( sourceFile ).compilation().startTime();
     }
 
     /**
@@ -94,7 +109,43 @@ public class SBT013Analysis
     @Override
     public Set<File> getProducts( File sourceFile )
     {
-        return JavaConversions.setAsJavaSet( analysis.relations().products( sourceFile ) );
+        return JavaConversions.setAsJavaSet( getAnalysis().relations().products( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<File> getMemberRefDependencies( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( getAnalysis().relations().memberRef().internal().forward( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<File> getInheritanceDependencies( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( getAnalysis().relations().inheritance().internal().forward( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getExternalDependencies( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( getAnalysis().relations().externalDeps( sourceFile ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getClassNames( File sourceFile )
+    {
+        return JavaConversions.setAsJavaSet( getAnalysis().relations().classNames( sourceFile ) );
     }
 
     /**
@@ -105,7 +156,7 @@ public class SBT013Analysis
     {
         if ( stamps == null )
         {
-            stamps = analysis.stamps();
+            stamps = getAnalysis().stamps();
         }
         Stamp existingStamp = stamps.product( classFile );
         if ( existingStamp != null && existingStamp instanceof LastModified )
@@ -121,6 +172,15 @@ public class SBT013Analysis
     @Override
     public Object unwrap()
     {
+        return getAnalysis();
+    }
+
+    private sbt.inc.Analysis getAnalysis()
+    {
+        if ( analysis == null )
+        {
+            analysis = Compiler.analysis( analysisFile );
+        }
         return analysis;
     }
 
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates relocatable copies of SBT 0.13.x text analysis cache files and restores analysis cache files from them.
+ * <br>
+ * <br>
+ * In the relocatable copy absolute paths of configured root directories are replaced with {@code ${name}} tokens.
+ * When the analysis cache file is missing, or was written for a different output directory
+ * (the build directory was copied or restored from a cache in a different location),
+ * it is recreated from the relocatable copy with tokens expanded to current root directories.
+ * <br>
+ * <br>
+ * Text analysis format stores paths in plain text lines. Base64 encoded blobs (written in a separate line
+ * after a line ending with {@code " -> "}) are copied unchanged.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013AnalysisRelocator
+{
+    private static final String RELOCATABLE_FILE_EXTENSION = ".relocatable";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String BLOB_PREFIX_SUFFIX = " -> ";
+
+    private static final String OUTPUT_DIR_HEADER = "output directories:";
+
+    private static final String OUTPUT_DIR_KEY = "output dir -> ";
+
+    private List<String> rootPaths;
+
+    private List<String> rootTokens;
+
+    /**
+     * Creates analysis relocator.
+     *
+     * @param roots root directories keyed by token names
+     */
+    public SBT013AnalysisRelocator( Map<String, File> roots )
+    {
+        List<Map.Entry<String, File>> entries = new ArrayList<Map.Entry<String, File>>( roots.entrySet() );
+        // the longest root first, a root can be nested inside other root (e.g. local repository inside basedir)
+        Collections.sort( entries, new Comparator<Map.Entry<String, File>>()
+        {
+            public int compare( Map.Entry<String, File> e1, Map.Entry<String, File> e2 )
+            {
+                return e2.getValue().getAbsolutePath().length() - e1.getValue().getAbsolutePath().length();
+            }
+        } );
+        rootPaths = new ArrayList<String>( entries.size() );
+        rootTokens = new ArrayList<String>( entries.size() );
+        for ( Map.Entry<String, File> entry : entries )
+        {
+            rootPaths.add( entry.getValue().getAbsolutePath() );
+            rootTokens.add( "${" + entry.getKey() + "}" );
+        }
+    }
+
+    /**
+     * Returns relocatable analysis cache file location.
+     *
+     * @param analysisCacheFile analysis cache file
+     * @return relocatable analysis cache file
+     */
+    public static File getRelocatableFile( File analysisCacheFile )
+    {
+        return new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + RELOCATABLE_FILE_EXTENSION );
+    }
+
+    /**
+     * Recreates analysis cache file from its relocatable copy if the analysis cache file
+     * does not exist or was created for different output directory.
+     *
+     * @param analysisCacheFile analysis cache file
+     * @param outputDirectory current compilation output directory
+     * @return {@code true} if analysis cache file was restored
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean restore( File analysisCacheFile, File outputDirectory )
+        throws IOException
+    {
+        File relocatableFile = getRelocatableFile( analysisCacheFile );
+        if ( !relocatableFile.isFile() )
+        {
+            return false;
+        }
+        if ( analysisCacheFile.isFile() && outputDirectory.getAbsolutePath().equals( readOutputDirectory( analysisCacheFile ) ) )
+        {
+            return false;
+        }
+        copy( relocatableFile, analysisCacheFile, false );
+        return true;
+    }
+
+    /**
+     * Writes relocatable copy of analysis cache file if the copy does not exist or is older than the analysis cache
+     * file.
+     *
+     * @param analysisCacheFile analysis cache file
+     * @throws IOException if an I/O error occurs
+     */
+    public void store( File analysisCacheFile )
+        throws IOException
+    {
+        File relocatableFile = getRelocatableFile( analysisCacheFile );
+        if ( analysisCacheFile.isFile() && analysisCacheFile.lastModified() > relocatableFile.lastModified() )
+        {
+            copy( analysisCacheFile, relocatableFile, true );
+        }
+    }
+
+    /**
+     * Deletes relocatable copy of analysis cache file. Used when analysis cache file is modified outside
+     * of the compiler and relocation roots are unknown. The copy will be recreated during next compilation.
+     *
+     * @param analysisCacheFile analysis cache file
+     */
+    public static void invalidate( File analysisCacheFile )
+    {
+        File relocatableFile = getRelocatableFile( analysisCacheFile );
+        if ( relocatableFile.isFile() && !relocatableFile.delete() )
+        {
+            relocatableFile.deleteOnExit();
+        }
+    }
+
+    private void copy( File from, File to, boolean relocate )
+        throws IOException
+    {
+        File tmp = new File( to.getParentFile(), to.getName() + ".tmp" );
+        BufferedReader reader = new BufferedReader( newReader( from ) );
+        try
+        {
+            Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmp ), ENCODING ) );
+            try
+            {
+                boolean blob = false;
+                String line = reader.readLine();
+                while ( line != null )
+                {
+                    writer.write( blob ? line : ( relocate ? relocate( line ) : expand( line ) ) );
+                    writer.write( '\n' );
+                    blob = !blob && line.endsWith( BLOB_PREFIX_SUFFIX );
+                    line = reader.readLine();
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        if ( to.exists() && !to.delete() )
+        {
+            throw new IOException( String.format( "Cannot delete \"%s\" file", to.getAbsolutePath() ) );
+        }
+        if ( !tmp.renameTo( to ) )
+        {
+            throw new IOException( String.format( "Cannot rename \"%s\" file to \"%s\"", tmp.getAbsolutePath(),
+                                                  to.getAbsolutePath() ) );
+        }
+    }
+
+    private String relocate( String line )
+    {
+        String result = line;
+        for ( int i = 0; i < rootPaths.size(); i++ )
+        {
+            result = replacePath( result, rootPaths.get( i ), rootTokens.get( i ) );
+        }
+        return result;
+    }
+
+    private String expand( String line )
+    {
+        String result = line;
+        if ( result.indexOf( "${" ) >= 0 )
+        {
+            for ( int i = 0; i < rootPaths.size(); i++ )
+            {
+                result = result.replace( rootTokens.get( i ), rootPaths.get( i ) );
+            }
+        }
+        return result;
+    }
+
+    // replaces "path" occurrences followed by file separator or line end only
+    private static String replacePath( String line, String path, String token )
+    {
+        int index = line.indexOf( path );
+        if ( index < 0 )
+        {
+            return line;
+        }
+        StringBuilder buf = new StringBuilder( line.length() );
+        int start = 0;
+        while ( index >= 0 )
+        {
+            int end = index + path.length();
+            if ( end == line.length() || line.charAt( end ) == File.separatorChar )
+            {
+                buf.append( line, start, index ).append( token );
+                start = end;
+            }
+            index = line.indexOf( path, end );
+        }
+        buf.append( line, start, line.length() );
+        return buf.toString();
+    }
+
+    private static String readOutputDirectory( File analysisCacheFile )
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader( newReader( analysisCacheFile ) );
+        try
+        {
+            boolean outputDirSection = false;
+            String line = reader.readLine();
+            while ( line != null )
+            {
+                if ( outputDirSection && line.startsWith( OUTPUT_DIR_KEY ) )
+                {
+                    return line.substring( OUTPUT_DIR_KEY.length() );
+                }
+                if ( OUTPUT_DIR_HEADER.equals( line ) )
+                {
+                    outputDirSection = true;
+                }
+                line = reader.readLine();
+            }
+            return null;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static Reader newReader( File file )
+        throws IOException
+    {
+        return new InputStreamReader( new FileInputStream( file ), ENCODING );
+    }
+
+}
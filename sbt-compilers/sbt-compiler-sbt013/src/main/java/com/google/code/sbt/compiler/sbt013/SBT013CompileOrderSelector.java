@@ -0,0 +1,313 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import scala.Option;
+import scala.Tuple2;
+import scala.collection.JavaConversions;
+
+import sbt.CompileSetup;
+import sbt.Relation;
+
+import xsbti.Problem;
+import xsbti.Severity;
+import xsbti.compile.CompileOrder;
+
+import com.google.code.sbt.compiler.api.SourceTextCache;
+
+import com.typesafe.zinc.Compiler;
+
+/**
+ * Automatic compile order selection.
+ * <br>
+ * <br>
+ * Java only sources are compiled in {@code JavaThenScala} order (Scala compiler is not used at all).
+ * For mixed Scala and Java sources, source dependencies from previous analysis are examined.
+ * If Java sources do not depend on Scala sources, {@code JavaThenScala} order is selected,
+ * so Scala compiler does not have to parse Java sources. If Scala sources do not depend on Java sources,
+ * {@code ScalaThenJava} order is selected. Otherwise, or if there is no previous analysis,
+ * {@code Mixed} order is used. Previous compile order is preferred if still valid, because
+ * every compile order change causes full recompilation.
+ * <br>
+ * <br>
+ * Dependencies added since previous compilation may make the selected order invalid.
+ * Compilation failure is then recognized by unresolved symbol errors in sources compiled first,
+ * referring to names used in sources in the other language (see {@link #isCrossLanguageFailure}).
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013CompileOrderSelector
+{
+    /**
+     * Automatic compile order selection.
+     */
+    public static final String AUTO = "auto";
+
+    // "cannot find symbol\n  symbol:   class Foo\n  location: package p"
+    private static final Pattern JAVA_SYMBOL_NOT_FOUND =
+        Pattern.compile( "^cannot find symbol(?:.*?symbol:\\s+\\S+\\s+([\\w$]+))?", Pattern.DOTALL );
+
+    private static final Pattern JAVA_PACKAGE_NOT_FOUND =
+        Pattern.compile( "^package (?:[\\w$]+\\.)*([\\w$]+) does not exist" );
+
+    private static final Pattern SCALA_NOT_FOUND = Pattern.compile( "^not found: (?:type|value|object) ([\\w$]+)" );
+
+    private static final Pattern SCALA_NOT_MEMBER_OF_PACKAGE =
+        Pattern.compile( "^(?:\\w+ )?([\\w$]+) is not a member of package" );
+
+    private List<File> sourceFiles;
+
+    private boolean javaSources;
+
+    private boolean scalaSources;
+
+    /**
+     * Creates compile order selector.
+     *
+     * @param sourceFiles Java and Scala source files
+     */
+    public SBT013CompileOrderSelector( List<File> sourceFiles )
+    {
+        this.sourceFiles = sourceFiles;
+        for ( File sourceFile : sourceFiles )
+        {
+            if ( isJava( sourceFile ) )
+            {
+                javaSources = true;
+            }
+            else
+            {
+                scalaSources = true;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if there are only Java sources.
+     *
+     * @return {@code true} if there are only Java sources
+     */
+    public boolean isJavaOnly()
+    {
+        return javaSources && !scalaSources;
+    }
+
+    /**
+     * Returns {@code true} if there are both Java and Scala sources.
+     *
+     * @return {@code true} if there are both Java and Scala sources
+     */
+    public boolean isMixed()
+    {
+        return javaSources && scalaSources;
+    }
+
+    /**
+     * Selects compile order.
+     *
+     * @param analysisCacheFile analysis cache file
+     * @return selected compile order
+     */
+    public CompileOrder select( File analysisCacheFile )
+    {
+        if ( isJavaOnly() )
+        {
+            return CompileOrder.JavaThenScala;
+        }
+
+        Option<Tuple2<sbt.inc.Analysis, CompileSetup>> previous = Option.empty();
+        if ( analysisCacheFile.isFile() )
+        {
+            previous = Compiler.analysisStore( analysisCacheFile ).get();
+        }
+        if ( previous.isEmpty() )
+        {
+            return CompileOrder.Mixed;
+        }
+        CompileOrder previousOrder = previous.get()._2().order();
+        if ( !isMixed() )
+        {
+            return previousOrder; // order does not matter, don't invalidate previous analysis
+        }
+
+        boolean javaDependsOnScala = false;
+        boolean scalaDependsOnJava = false;
+        Relation<File, File> dependencies = previous.get()._1().relations().internalSrcDep();
+        for ( Map.Entry<File, scala.collection.immutable.Set<File>> entry : JavaConversions.mapAsJavaMap( dependencies.forwardMap() ).entrySet() )
+        {
+            boolean javaSource = isJava( entry.getKey() );
+            for ( File dependency : JavaConversions.setAsJavaSet( entry.getValue() ) )
+            {
+                if ( javaSource && !isJava( dependency ) )
+                {
+                    javaDependsOnScala = true;
+                }
+                else if ( !javaSource && isJava( dependency ) )
+                {
+                    scalaDependsOnJava = true;
+                }
+            }
+        }
+
+        CompileOrder result = CompileOrder.Mixed;
+        if ( previousOrder == CompileOrder.JavaThenScala && !javaDependsOnScala
+            || previousOrder == CompileOrder.ScalaThenJava && !scalaDependsOnJava )
+        {
+            result = previousOrder;
+        }
+        else if ( !javaDependsOnScala )
+        {
+            result = CompileOrder.JavaThenScala;
+        }
+        else if ( !scalaDependsOnJava )
+        {
+            result = CompileOrder.ScalaThenJava;
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if compilation in {@code JavaThenScala} or {@code ScalaThenJava} order failed because
+     * sources compiled first depend on sources in the other language, so it should be retried in {@code Mixed} order.
+     * <br>
+     * <br>
+     * All errors must be unresolved symbol errors in sources compiled first, and every unresolved name
+     * must occur in a source in the other language. Other errors, for example type errors, are not fixed
+     * by changing the compile order.
+     *
+     * @param compileOrder compile order of failed compilation
+     * @param problems problems reported by failed compilation
+     * @param sourceEncoding source files encoding, may be {@code null}
+     * @return {@code true} if compilation should be retried in {@code Mixed} order
+     */
+    public boolean isCrossLanguageFailure( CompileOrder compileOrder, Problem[] problems, String sourceEncoding )
+    {
+        if ( compileOrder == CompileOrder.Mixed )
+        {
+            return false;
+        }
+        boolean javaFirst = compileOrder == CompileOrder.JavaThenScala;
+        Set<String> names = new HashSet<String>();
+        boolean errors = false;
+        for ( Problem problem : problems )
+        {
+            if ( problem.severity() != Severity.Error )
+            {
+                continue;
+            }
+            errors = true;
+            if ( !problem.position().sourceFile().isDefined()
+                || isJava( problem.position().sourceFile().get() ) != javaFirst )
+            {
+                return false;
+            }
+            String message = problem.message();
+            Matcher matcher = ( javaFirst ? JAVA_SYMBOL_NOT_FOUND : SCALA_NOT_FOUND ).matcher( message );
+            if ( !matcher.find() )
+            {
+                matcher = ( javaFirst ? JAVA_PACKAGE_NOT_FOUND : SCALA_NOT_MEMBER_OF_PACKAGE ).matcher( message );
+                if ( !matcher.find() )
+                {
+                    return false;
+                }
+            }
+            if ( matcher.group( 1 ) != null ) // name is not known for some "cannot find symbol" errors
+            {
+                names.add( matcher.group( 1 ) );
+            }
+        }
+        return errors && occurInOtherLanguage( names, javaFirst, sourceEncoding );
+    }
+
+    private boolean occurInOtherLanguage( Set<String> names, boolean java, String sourceEncoding )
+    {
+        List<Pattern> patterns = new ArrayList<Pattern>( names.size() );
+        for ( String name : names )
+        {
+            patterns.add( Pattern.compile( "\\b" + Pattern.quote( name ) + "\\b" ) );
+        }
+        for ( File sourceFile : sourceFiles )
+        {
+            if ( patterns.isEmpty() )
+            {
+                break;
+            }
+            if ( isJava( sourceFile ) != java )
+            {
+                try
+                {
+                    String text = SourceTextCache.getDefault().get( sourceFile, sourceEncoding ).getText();
+                    for ( int i = patterns.size() - 1; i >= 0; i-- )
+                    {
+                        if ( patterns.get( i ).matcher( text ).find() )
+                        {
+                            patterns.remove( i );
+                        }
+                    }
+                }
+                catch ( IOException e )
+                {
+                    return true; // cannot decide, retry
+                }
+            }
+        }
+        return patterns.isEmpty();
+    }
+
+    /**
+     * Converts compile order name to {@code CompileOrder} value.
+     *
+     * @param compileOrder compile order name
+     * @return compile order value or {@code null} if the name is unknown
+     */
+    public static CompileOrder parse( String compileOrder )
+    {
+        CompileOrder result = null;
+        String order = compileOrder.toLowerCase( Locale.ENGLISH );
+        if ( "mixed".equals( order ) )
+        {
+            result = CompileOrder.Mixed;
+        }
+        else if ( "java".equals( order ) || "java-then-scala".equals( order ) || "javathenscala".equals( order ) )
+        {
+            result = CompileOrder.JavaThenScala;
+        }
+        else if ( "scala".equals( order ) || "scala-then-java".equals( order ) || "scalathenjava".equals( order ) )
+        {
+            result = CompileOrder.ScalaThenJava;
+        }
+        return result;
+    }
+
+    private static boolean isJava( File sourceFile )
+    {
+        return sourceFile.getName().endsWith( ".java" );
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xsbti.compile.CompileProgress;
+
+import com.google.code.sbt.compiler.api.CompilationCancellation;
+import com.google.code.sbt.compiler.api.CompilerLogger;
+
+/**
+ * SBT {@code xsbti.compile.CompileProgress} implementation reporting Scala compilation progress
+ * and stopping Scala compilation early.
+ * <br>
+ * <br>
+ * Every {@code progressInterval} milliseconds current phase, number of processed units, elapsed time
+ * and estimated remaining time are logged. Remaining time is estimated from phase timings of previous
+ * compilations (see {@link SBT013PhaseTimings}) or, if not available, from progress of current compiler run.
+ * Every compilation unit start is logged at debug level.
+ * <br>
+ * <br>
+ * Scala compiler is cancelled after configured number of errors was reported, when compilation timeout
+ * elapses or when cancellation is requested. These conditions are checked every time Scala compiler
+ * advances to the next compilation unit or phase. Java compilation is not cancelled.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013CompileProgress
+    implements CompileProgress
+{
+    private SBT013Reporter reporter;
+
+    private int failFastErrors;
+
+    private long deadline;
+
+    private CompilationCancellation cancellation;
+
+    private CompilerLogger logger;
+
+    private long progressInterval;
+
+    private SBT013PhaseTimings timings;
+
+    private String cancelReason;
+
+    private long startTime;
+
+    private long lastReportTime;
+
+    private long runStartTime;
+
+    private String firstPhase;
+
+    private String phase;
+
+    private long phaseStartTime;
+
+    private int phaseUnits;
+
+    private int units = -1;
+
+    private List<long[]> cycles = new ArrayList<long[]>(); // units compiled and start time of every compiler run
+
+    /**
+     * Creates compile progress.
+     *
+     * @param reporter reporter counting reported errors
+     * @param failFastErrors number of errors after which compilation is stopped, {@code 0} to disable
+     * @param timeout compilation timeout in milliseconds, {@code 0} for no timeout
+     * @param cancellation compilation cancellation request, may be {@code null}
+     * @param logger {@link CompilerLogger} for progress messages
+     * @param progressInterval progress messages interval in milliseconds, {@code 0} to disable
+     * @param timings phase timings of previous compilations, may be {@code null}
+     */
+    public SBT013CompileProgress( SBT013Reporter reporter, int failFastErrors, long timeout,
+                                  CompilationCancellation cancellation, CompilerLogger logger, long progressInterval,
+                                  SBT013PhaseTimings timings )
+    {
+        this.reporter = reporter;
+        this.failFastErrors = failFastErrors;
+        this.startTime = System.currentTimeMillis();
+        this.lastReportTime = startTime;
+        this.deadline = timeout > 0 ? startTime + timeout : 0L;
+        this.cancellation = cancellation;
+        this.logger = logger;
+        this.progressInterval = progressInterval;
+        this.timings = timings;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startUnit( String phaseName, String unitPath )
+    {
+        long now = System.currentTimeMillis();
+        if ( !phaseName.equals( phase ) )
+        {
+            if ( phase != null )
+            {
+                endPhase( now );
+            }
+            if ( phase == null || phaseName.equals( firstPhase ) )
+            {
+                // next compiler run (incremental compilation cycle)
+                firstPhase = phaseName;
+                runStartTime = now;
+                units = -1;
+                cycles.add( new long[] { -1L, now } );
+            }
+            phase = phaseName;
+            phaseStartTime = now;
+            phaseUnits = 0;
+        }
+        phaseUnits++;
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( String.format( "Compiling [%s] %s", phaseName, unitPath ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean advance( int current, int total )
+    {
+        long now = System.currentTimeMillis();
+        if ( current >= total && phase != null )
+        {
+            // compiler run finished
+            endPhase( now );
+            phase = null;
+        }
+        else if ( progressInterval > 0 && now - lastReportTime >= progressInterval && phase != null )
+        {
+            lastReportTime = now;
+            logger.info( getProgressMessage( now, current, total ) );
+        }
+
+        if ( cancelReason == null )
+        {
+            if ( failFastErrors > 0 && reporter.getErrorCount() >= failFastErrors )
+            {
+                cancelReason = String.format( "Compilation stopped after %d errors", reporter.getErrorCount() );
+            }
+            else if ( deadline > 0L && now > deadline )
+            {
+                cancelReason = "Compilation timeout elapsed";
+            }
+            else if ( cancellation != null && cancellation.isCancelled() )
+            {
+                cancelReason = "Compilation cancelled";
+            }
+        }
+        return cancelReason == null;
+    }
+
+    /**
+     * Returns {@code true} if compilation was cancelled.
+     *
+     * @return {@code true} if compilation was cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelReason != null;
+    }
+
+    /**
+     * Returns the reason of compilation cancellation.
+     *
+     * @return cancellation reason or {@code null} if compilation was not cancelled
+     */
+    public String getCancelReason()
+    {
+        return cancelReason;
+    }
+
+    /**
+     * Returns number of compiled units and time of every Scala compiler run (incremental compilation cycle).
+     * Cycle time is measured until the next compiler run starts, so it includes Java compilation
+     * and analysis processing.
+     *
+     * @param endTime compilation end time
+     * @return list of two element arrays: number of compiled units and time in milliseconds
+     */
+    public List<long[]> getCycles( long endTime )
+    {
+        List<long[]> result = new ArrayList<long[]>( cycles.size() );
+        for ( int i = 0; i < cycles.size(); i++ )
+        {
+            long[] cycle = cycles.get( i );
+            long cycleEndTime = i + 1 < cycles.size() ? cycles.get( i + 1 )[1] : endTime;
+            result.add( new long[] { Math.max( cycle[0], 0L ), cycleEndTime - cycle[1] } );
+        }
+        return result;
+    }
+
+    private void endPhase( long now )
+    {
+        if ( units < 0 )
+        {
+            units = phaseUnits; // every unit is processed by every phase
+            cycles.get( cycles.size() - 1 )[0] = units;
+        }
+        if ( timings != null )
+        {
+            timings.record( phase, now - phaseStartTime, phaseUnits );
+        }
+    }
+
+    private String getProgressMessage( long now, int current, int total )
+    {
+        StringBuilder sb = new StringBuilder( "Compiling: " ).append( phase ).append( " phase, " );
+        if ( units >= 0 )
+        {
+            sb.append( phaseUnits ).append( '/' ).append( units ).append( " units" );
+        }
+        else
+        {
+            sb.append( phaseUnits ).append( " units" );
+        }
+        sb.append( ", " ).append( formatTime( now - startTime ) ).append( " elapsed" );
+
+        long remaining = -1L;
+        if ( timings != null && units >= 0 )
+        {
+            remaining = timings.estimate( phase, phaseUnits, units );
+        }
+        if ( remaining < 0L && current > 0 )
+        {
+            remaining = ( now - runStartTime ) * ( total - current ) / current;
+        }
+        if ( remaining >= 0L )
+        {
+            sb.append( ", about " ).append( formatTime( remaining ) ).append( " remaining" );
+        }
+        return sb.toString();
+    }
+
+    private static String formatTime( long millis )
+    {
+        long seconds = millis / 1000L;
+        return seconds >= 60L ? String.format( "%dm %02ds", seconds / 60L, seconds % 60L )
+                        : String.format( "%ds", seconds );
+    }
+
+}
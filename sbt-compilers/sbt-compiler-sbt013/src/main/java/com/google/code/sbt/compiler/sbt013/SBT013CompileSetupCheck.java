@@ -0,0 +1,263 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.code.sbt.compiler.api.CompilerLogger;
+
+import scala.Option;
+import scala.Tuple2;
+import scala.collection.JavaConversions;
+import scala.collection.Seq;
+
+import sbt.CompileOptions;
+import sbt.CompileSetup;
+import sbt.CompileSetup$;
+import sbt.inc.AnalysisStore;
+
+import xsbti.compile.CompileOrder;
+import xsbti.compile.Output;
+import xsbti.compile.SingleOutput;
+
+import com.typesafe.zinc.Compiler;
+
+/**
+ * Compares compile setup stored in incremental compilation analysis cache file with the current one.
+ * <br>
+ * <br>
+ * SBT compiler recompiles all sources if output directory, compiler options, Scala version, compile order
+ * or name hashing setting differ from the ones stored with the analysis of previous compilation, but it does not
+ * say what changed. This check logs the differences.
+ * <br>
+ * <br>
+ * Compiler options are compared after normalization. Options with different names are sorted (relative order
+ * of options with the same name, for example {@code -Xlint:...}, is preserved) and paths in {@code -Xplugin:}
+ * options are replaced with file names, so reordered options or plugins resolved from a different local
+ * repository location do not force full recompilation. If the setups differ only before normalization,
+ * the stored setup is replaced with the current one.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013CompileSetupCheck
+{
+    private static final String PLUGIN_OPTION_PREFIX = "-Xplugin:";
+
+    private CompilerLogger logger;
+
+    /**
+     * Creates compile setup check.
+     *
+     * @param logger compiler logger
+     */
+    public SBT013CompileSetupCheck( CompilerLogger logger )
+    {
+        this.logger = logger;
+    }
+
+    /**
+     * Compares stored and current compile setups, logs differences and removes spurious differences.
+     *
+     * @param analysisCacheFile analysis cache file
+     * @param output current compilation output
+     * @param scalacOptions current Scala compiler options
+     * @param javacOptions current Java compiler options
+     * @param compilerVersion current Scala compiler version
+     * @param compileOrder current compile order
+     * @param nameHashing current name hashing setting
+     */
+    public void check( File analysisCacheFile, Output output, Seq<String> scalacOptions, Seq<String> javacOptions,
+                       String compilerVersion, CompileOrder compileOrder, boolean nameHashing )
+    {
+        if ( !analysisCacheFile.isFile() )
+        {
+            return;
+        }
+        AnalysisStore analysisStore = Compiler.analysisStore( analysisCacheFile );
+        Option<Tuple2<sbt.inc.Analysis, CompileSetup>> stored = analysisStore.get();
+        if ( stored.isEmpty() )
+        {
+            return;
+        }
+        CompileSetup previous = stored.get()._2();
+
+        List<String> differences = new ArrayList<String>();
+        if ( !CompileSetup$.MODULE$.equivOutput().equiv( previous.output(), output ) )
+        {
+            differences.add( String.format( "output directory: %s -> %s", toString( previous.output() ),
+                                            toString( output ) ) );
+        }
+        List<String> previousScalacOptions = JavaConversions.seqAsJavaList( previous.options().options() );
+        List<String> currentScalacOptions = JavaConversions.seqAsJavaList( scalacOptions );
+        diffOptions( "scalac", normalize( previousScalacOptions, true ), normalize( currentScalacOptions, true ),
+                     differences );
+        List<String> previousJavacOptions = JavaConversions.seqAsJavaList( previous.options().javacOptions() );
+        List<String> currentJavacOptions = JavaConversions.seqAsJavaList( javacOptions );
+        diffOptions( "javac", normalize( previousJavacOptions, false ), normalize( currentJavacOptions, false ),
+                     differences );
+        if ( !previous.compilerVersion().equals( compilerVersion ) )
+        {
+            differences.add( String.format( "Scala version: %s -> %s", previous.compilerVersion(), compilerVersion ) );
+        }
+        if ( previous.order() != compileOrder )
+        {
+            differences.add( String.format( "compile order: %s -> %s", previous.order().name(),
+                                            compileOrder.name() ) );
+        }
+        if ( previous.nameHashing() != nameHashing )
+        {
+            differences.add( String.format( "name hashing: %s -> %s", previous.nameHashing(), nameHashing ) );
+        }
+
+        if ( !differences.isEmpty() )
+        {
+            logger.info( "Compile setup changed since previous compilation, all sources will be recompiled:" );
+            for ( String difference : differences )
+            {
+                logger.info( "  " + difference );
+            }
+            return;
+        }
+
+        if ( !previousScalacOptions.equals( currentScalacOptions )
+            || !previousJavacOptions.equals( currentJavacOptions ) )
+        {
+            logger.debug( "Compiler options differ only in order or plugin paths, updating stored compile setup" );
+            CompileSetup current =
+                new CompileSetup( previous.output(), new CompileOptions( scalacOptions, javacOptions ),
+                                  previous.compilerVersion(), previous.order(), previous.nameHashing() );
+            analysisStore.set( stored.get()._1(), current );
+            // relocation roots are not known here, relocatable copy will be recreated during next compilation
+            SBT013AnalysisRelocator.invalidate( analysisCacheFile );
+        }
+    }
+
+    // options with their arguments sorted by name, order of options with the same name is preserved
+    private static List<String> normalize( List<String> options, boolean scalac )
+    {
+        List<String> result = new ArrayList<String>();
+        for ( String option : options )
+        {
+            if ( option.startsWith( "-" ) || result.isEmpty() )
+            {
+                if ( scalac && option.startsWith( PLUGIN_OPTION_PREFIX ) )
+                {
+                    option = normalizePluginOption( option );
+                }
+                result.add( option );
+            }
+            else
+            {
+                // option argument, for example "-encoding UTF-8"
+                int last = result.size() - 1;
+                result.set( last, result.get( last ) + ' ' + option );
+            }
+        }
+        Collections.sort( result, new Comparator<String>() // stable
+        {
+            public int compare( String o1, String o2 )
+            {
+                return getOptionName( o1 ).compareTo( getOptionName( o2 ) );
+            }
+        } );
+        return result;
+    }
+
+    private static String normalizePluginOption( String option )
+    {
+        StringBuilder sb = new StringBuilder( PLUGIN_OPTION_PREFIX );
+        String[] paths = option.substring( PLUGIN_OPTION_PREFIX.length() ).split( "," );
+        for ( int i = 0; i < paths.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                sb.append( ',' );
+            }
+            sb.append( new File( paths[i] ).getName() );
+        }
+        return sb.toString();
+    }
+
+    // "-Xlint" for "-Xlint:_", "-encoding" for "-encoding UTF-8"
+    private static String getOptionName( String option )
+    {
+        int end = option.length();
+        int colon = option.indexOf( ':' );
+        if ( colon > 0 )
+        {
+            end = colon;
+        }
+        int space = option.indexOf( ' ' );
+        if ( space > 0 && space < end )
+        {
+            end = space;
+        }
+        return option.substring( 0, end );
+    }
+
+    private static void diffOptions( String compiler, List<String> previous, List<String> current,
+                                     List<String> differences )
+    {
+        if ( previous.equals( current ) )
+        {
+            return;
+        }
+        List<String> removed = new ArrayList<String>( previous );
+        removed.removeAll( current );
+        List<String> added = new ArrayList<String>( current );
+        added.removeAll( previous );
+        if ( !removed.isEmpty() )
+        {
+            differences.add( String.format( "%s options removed: %s", compiler, join( removed ) ) );
+        }
+        if ( !added.isEmpty() )
+        {
+            differences.add( String.format( "%s options added: %s", compiler, join( added ) ) );
+        }
+        if ( removed.isEmpty() && added.isEmpty() )
+        {
+            differences.add( String.format( "%s options reordered: %s -> %s", compiler, join( previous ),
+                                            join( current ) ) );
+        }
+    }
+
+    private static String join( List<String> options )
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( String option : options )
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ' ' );
+            }
+            sb.append( option );
+        }
+        return sb.toString();
+    }
+
+    private static String toString( Output output )
+    {
+        return output instanceof SingleOutput ? ( (SingleOutput) output ).outputDirectory().getPath()
+                        : output.toString();
+    }
+
+}
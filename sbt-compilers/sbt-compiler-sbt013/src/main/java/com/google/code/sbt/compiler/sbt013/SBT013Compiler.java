@@ -18,10 +18,11 @@
 package com.google.code.sbt.compiler.sbt013;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.code.sbt.compiler.api.AbstractCompiler;
 import com.google.code.sbt.compiler.api.Analysis;
@@ -29,21 +30,27 @@ import com.google.code.sbt.compiler.api.CompilationProblem;
 import com.google.code.sbt.compiler.api.CompilerConfiguration;
 import com.google.code.sbt.compiler.api.CompilerException;
 import com.google.code.sbt.compiler.api.CompilerLogger;
-import com.google.code.sbt.compiler.api.DefaultCompilationProblem;
-import com.google.code.sbt.compiler.api.DefaultSourcePosition;
-import com.google.code.sbt.compiler.api.SourcePosition;
 import com.google.code.sbt.compiler.api.SourcePositionMapper;
 
 import org.codehaus.plexus.component.annotations.Component;
 
 import scala.Function1;
 import scala.Option;
+import scala.Tuple2;
+
+import sbt.ClasspathOptions;
+import sbt.CompileSetup;
+import sbt.ScalaInstance;
+import sbt.compiler.AnalyzingCompiler;
+import sbt.compiler.CompileOutput$;
+import sbt.compiler.javac.JavaTools$;
 
 import xsbti.CompileFailed;
-import xsbti.Maybe;
 import xsbti.Position;
-import xsbti.Problem;
-import xsbti.Reporter;
+import xsbti.compile.CompileOrder;
+import xsbti.compile.CompileProgress;
+import xsbti.compile.JavaCompiler;
+import xsbti.compile.Output;
 
 import com.typesafe.zinc.Compiler;
 import com.typesafe.zinc.IncOptions;
@@ -60,9 +67,9 @@ public class SBT013Compiler
     extends AbstractCompiler
 {
     /**
-     * SBT compilation order.
+     * Default SBT compilation order.
      */
-    private static final String COMPILE_ORDER = "mixed";
+    private static final String DEFAULT_COMPILE_ORDER = "mixed";
 
     /**
      * Run javac compilation in forked JVM.
@@ -104,7 +111,103 @@ public class SBT013Compiler
         throws CompilerException
     {
         CompilerLogger logger = configuration.getLogger();
-        SBT013Logger sbtLogger = new SBT013Logger( logger );
+        SBT013Logger sbtLogger = new SBT013Logger( logger, configuration.getSuppressedWarnings() );
+
+        SBT013AnalysisRelocator relocator = getAnalysisRelocator( configuration );
+        if ( relocator != null )
+        {
+            try
+            {
+                if ( relocator.restore( configuration.getAnalysisCacheFile(), configuration.getOutputDirectory() ) )
+                {
+                    logger.info( "Analysis cache file restored from relocatable copy" );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.warn( String.format( "Analysis cache file restoration failed: %s", e.getMessage() ) );
+            }
+        }
+
+        String configuredCompileOrder =
+            configuration.getCompileOrder() != null ? configuration.getCompileOrder()
+                            : SBT013Compiler.DEFAULT_COMPILE_ORDER;
+        CompileOrder compileOrder = null;
+        if ( !SBT013CompileOrderSelector.AUTO.equals( configuredCompileOrder ) )
+        {
+            compileOrder = SBT013CompileOrderSelector.parse( configuredCompileOrder );
+            if ( compileOrder == null )
+            {
+                throw new CompilerException( String.format( "Unknown compile order \"%s\"", configuredCompileOrder ) );
+            }
+        }
+
+        List<String> scalacOptions = resolveScalacOptions( configuration );
+        List<String> javacOptions = resolveJavacOptions( configuration );
+        boolean skipJavac = false;
+        if ( configuration.isTypecheckOnly() )
+        {
+            skipJavac = addTypecheckOnlyOptions( configuration.getSourceFiles(), scalacOptions, javacOptions );
+            if ( skipJavac )
+            {
+                logger.info( "Java sources are type checked by Scala compiler only, method bodies are not checked" );
+            }
+        }
+
+        SBT013WarningAggregator warningAggregator = null;
+        if ( configuration.isAggregateWarnings() )
+        {
+            warningAggregator =
+                new SBT013WarningAggregator( configuration.getWarningExamples(), configuration.getWarningsFile() );
+        }
+
+        SourcePositionMapper mapper = configuration.getSourcePositionMapper();
+        Function1<Position, Position> sourcePositionMapper = new SBT013SourcePositionMapper( mapper, configuration.getSourceEncoding(), logger );
+        SBT013Reporter reporter =
+            new SBT013Reporter( getMaximumErrors(), sbtLogger, sourcePositionMapper,
+                                configuration.getProblemListener(), warningAggregator );
+
+        SBT013WarningCache warningCache = null;
+        if ( configuration.isReplayWarnings() )
+        {
+            File analysisCacheFile = configuration.getAnalysisCacheFile();
+            warningCache =
+                new SBT013WarningCache( new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName()
+                    + ".warnings" ) );
+        }
+
+        SBT013UpToDateCheck upToDateCheck = null;
+        if ( configuration.isSourceHashCache() )
+        {
+            upToDateCheck =
+                new SBT013UpToDateCheck( configuration, scalacOptions, javacOptions, configuredCompileOrder );
+            try
+            {
+                if ( upToDateCheck.isUpToDate() )
+                {
+                    logger.debug( "Sources, classpath and compiler options not changed since last compilation" );
+                    if ( warningCache != null )
+                    {
+                        try
+                        {
+                            replayWarnings( warningCache.getAll(), reporter, logger );
+                        }
+                        catch ( IOException e )
+                        {
+                            logger.warn( String.format( "Warnings cache reading failed: %s", e.getMessage() ) );
+                        }
+                    }
+                    flushWarnings( warningAggregator, logger );
+                    return new SBT013Analysis( configuration.getAnalysisCacheFile() );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.warn( String.format( "Up to date check failed: %s", e.getMessage() ) );
+            }
+        }
+        acquireCompilationPermit( configuration );
+
         Setup setup =
             Setup.create( configuration.getScalaCompilerFile(), configuration.getScalaLibraryFile(),
                           configuration.getScalaExtraJarFiles(), configuration.getXsbtiFile(),
@@ -113,42 +216,383 @@ public class SBT013Compiler
         {
             Setup.debug( setup, sbtLogger );
         }
-        Compiler compiler = Compiler.create( setup, sbtLogger );
+        ScalaInstance scalaInstance = Compiler.scalaInstance( setup );
+        Compiler compiler = createCompiler( setup, scalaInstance, sbtLogger, skipJavac );
+
+        if ( configuration.isTypecheckOnly() && configuration.getAnalysisCacheFile().isFile() )
+        {
+            // signatures of not recompiled sources would be read from class files, which are not generated,
+            // so all sources are type checked
+            if ( !configuration.getAnalysisCacheFile().delete() )
+            {
+                logger.warn( String.format( "Analysis cache file \"%s\" deletion failed",
+                                            configuration.getAnalysisCacheFile().getPath() ) );
+            }
+        }
+
+        boolean javaOnly = false;
+        boolean retryMixed = false;
+        SBT013CompileOrderSelector selector = null;
+        if ( compileOrder == null )
+        {
+            selector = new SBT013CompileOrderSelector( configuration.getSourceFiles() );
+            compileOrder = selector.select( configuration.getAnalysisCacheFile() );
+            javaOnly = selector.isJavaOnly();
+            retryMixed = selector.isMixed() && compileOrder != CompileOrder.Mixed;
+            logger.debug( String.format( "Selected compile order: %s", compileOrder.name() ) );
+        }
+
+        File analysisCacheFile = configuration.getAnalysisCacheFile();
+        SBT013IncHistory incHistory =
+            new SBT013IncHistory( new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + ".inc" ) );
+        try
+        {
+            incHistory.load();
+        }
+        catch ( IOException e )
+        {
+            logger.warn( String.format( "Incremental compilation history reading failed: %s", e.getMessage() ) );
+        }
+        logger.debug( String.format( "Recompile all fraction: %.2f", incHistory.getRecompileAllFraction() ) );
+
+        SBT013InvalidationReport invalidationReport = null;
+        if ( configuration.isInvalidationReport() )
+        {
+            // previous analysis is overwritten by the compilation
+            sbt.inc.Analysis previousAnalysis = null;
+            if ( analysisCacheFile.isFile() )
+            {
+                Option<Tuple2<sbt.inc.Analysis, CompileSetup>> previous =
+                    Compiler.analysisStore( analysisCacheFile ).get();
+                if ( previous.isDefined() )
+                {
+                    previousAnalysis = previous.get()._1();
+                }
+            }
+            invalidationReport = new SBT013InvalidationReport( previousAnalysis );
+        }
 
         Inputs inputs =
             Inputs.create( configuration.getClasspathFiles(), configuration.getSourceFiles(),
-                           configuration.getOutputDirectory(), resolveScalacOptions( configuration ),
-                           resolveJavacOptions( configuration ), configuration.getAnalysisCacheFile(),
-                           configuration.getAnalysisCacheMap(), SBT013Compiler.COMPILE_ORDER,
-                           getIncOptions( configuration ), false /* mirrorAnalysisCache */ );
+                           configuration.getOutputDirectory(), scalacOptions, javacOptions,
+                           configuration.getAnalysisCacheFile(),
+                           configuration.getAnalysisCacheMap(), SBT013Compiler.DEFAULT_COMPILE_ORDER,
+                           getIncOptions( configuration, incHistory.getRecompileAllFraction() ),
+                           false /* mirrorAnalysisCache */ );
+        Function1<File, Function1<String, Object>> definesClass = inputs.definesClass();
+        if ( configuration.isClasspathIndexCache() )
+        {
+            definesClass = new SBT013DefinesClass( new File( setup.cacheDir(), "classpath-index" ), logger );
+        }
+        inputs = customizeInputs( inputs, definesClass, javaOnly, compileOrder );
         if ( logger.isDebugEnabled() )
         {
             Inputs.debug( inputs, sbtLogger );
         }
-
+        new SBT013CompileSetupCheck( logger ).check( analysisCacheFile,
+                                                     CompileOutput$.MODULE$.apply( inputs.classesDirectory() ),
+                                                     inputs.scalacOptions(), inputs.javacOptions(),
+                                                     scalaInstance.actualVersion(), inputs.compileOrder(),
+                                                     inputs.incOptions().nameHashing() );
+
+        SBT013PhaseTimings timings =
+            new SBT013PhaseTimings( new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName()
+                + ".timings" ) );
+        try
+        {
+            timings.load();
+        }
+        catch ( IOException e )
+        {
+            logger.warn( String.format( "Phase timings reading failed: %s", e.getMessage() ) );
+        }
+        SBT013CompileProgress progress =
+            new SBT013CompileProgress( reporter, configuration.getFailFastErrors(), configuration.getCompileTimeout(),
+                                       configuration.getCancellation(), logger,
+                                       configuration.getProgressInterval(), timings );
         try
         {
-            SourcePositionMapper mapper = configuration.getSourcePositionMapper();
-            Function1<Position, Position> sourcePositionMapper = new SBT013SourcePositionMapper( mapper, logger );
-            Reporter reporter =
-                new sbt.LoggerReporter( getMaximumErrors(), sbt.Logger$.MODULE$.xlog2Log( sbtLogger ),
-                                        sourcePositionMapper );
-            return new SBT013Analysis( compiler.compile( inputs, Option.<File> empty(), reporter, sbtLogger ) );
+            long compileStartTime = System.currentTimeMillis();
+            sbt.inc.Analysis compiledAnalysis;
+            if ( retryMixed )
+            {
+                // problems are reported only if compilation is not retried
+                reporter.holdProblems();
+            }
+            try
+            {
+                compiledAnalysis =
+                    compiler.compile( inputs, Option.<File> empty(), reporter,
+                                      Option.<CompileProgress> apply( progress ), sbtLogger );
+                reporter.releaseProblems();
+            }
+            catch ( CompileFailed e )
+            {
+                if ( !retryMixed || progress.isCancelled()
+                    || !selector.isCrossLanguageFailure( compileOrder, reporter.problems(),
+                                                         configuration.getSourceEncoding() ) )
+                {
+                    reporter.releaseProblems();
+                    throw e;
+                }
+                // automatically selected order may be invalid if new dependencies were added since last compilation
+                logger.info( String.format( "Compilation with %s compile order failed on dependencies between Java"
+                    + " and Scala sources, retrying with Mixed compile order", compileOrder.name() ) );
+                reporter.reset();
+                reporter.releaseProblems();
+                inputs = customizeInputs( inputs, definesClass, false, CompileOrder.Mixed );
+                compiledAnalysis =
+                    compiler.compile( inputs, Option.<File> empty(), reporter,
+                                      Option.<CompileProgress> apply( progress ), sbtLogger );
+            }
+            if ( progress.isCancelled() )
+            {
+                // cancelled compilation without errors returns previous analysis
+                throw new CompilerException( progress.getCancelReason(),
+                                             SBT013Reporter.toCompilationProblems( reporter.problems() ) );
+            }
+            SBT013Analysis analysis = new SBT013Analysis( compiledAnalysis );
+            if ( warningCache != null )
+            {
+                try
+                {
+                    List<CompilationProblem> cachedWarnings =
+                        warningCache.update( configuration.getSourceFiles(),
+                                             getRecompiledSources( configuration.getSourceFiles(), compiledAnalysis,
+                                                                   compileStartTime ),
+                                             reporter.getReportedWarnings() );
+                    replayWarnings( cachedWarnings, reporter, logger );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( String.format( "Warnings cache update failed: %s", e.getMessage() ) );
+                }
+            }
+            try
+            {
+                timings.save();
+            }
+            catch ( IOException e )
+            {
+                logger.warn( String.format( "Phase timings writing failed: %s", e.getMessage() ) );
+            }
+            incHistory.record( progress.getCycles( System.currentTimeMillis() ),
+                               getScalaCompiledSourceCount( configuration.getSourceFiles(),
+                                                            inputs.compileOrder() ) );
+            try
+            {
+                incHistory.save();
+            }
+            catch ( IOException e )
+            {
+                logger.warn( String.format( "Incremental compilation history writing failed: %s", e.getMessage() ) );
+            }
+            if ( invalidationReport != null )
+            {
+                File jsonFile =
+                    new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + "-invalidation.json" );
+                File textFile =
+                    new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + "-invalidation.txt" );
+                try
+                {
+                    invalidationReport.write( compiledAnalysis,
+                                              getRecompiledSources( configuration.getSourceFiles(), compiledAnalysis,
+                                                                    compileStartTime ),
+                                              progress.getCycles( System.currentTimeMillis() ), jsonFile, textFile );
+                    logger.info( String.format( "Invalidation report written to %s", textFile.getPath() ) );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( String.format( "Invalidation report writing failed: %s", e.getMessage() ) );
+                }
+            }
+            if ( upToDateCheck != null )
+            {
+                try
+                {
+                    upToDateCheck.record( compiledAnalysis );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( String.format( "Up to date check state writing failed: %s", e.getMessage() ) );
+                }
+            }
+            if ( relocator != null )
+            {
+                try
+                {
+                    relocator.store( configuration.getAnalysisCacheFile() );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( String.format( "Relocatable analysis cache file writing failed: %s", e.getMessage() ) );
+                }
+            }
+            return analysis;
         }
         catch ( CompileFailed e )
         {
-            CompilationProblem[] problems = getScalacProblems( e.problems() );
-            if ( problems.length == 0 )
+            CompilationProblem[] problems = SBT013Reporter.toCompilationProblems( e.problems() );
+            String message = progress.isCancelled() ? progress.getCancelReason() : "Scala compilation failed";
+            throw new CompilerException( message, e, problems );
+        }
+        finally
+        {
+            reporter.releaseProblems();
+            flushWarnings( warningAggregator, logger );
+        }
+    }
+
+    // Scala compiler compiles all sources in Mixed compile order, otherwise only Scala sources
+    private int getScalaCompiledSourceCount( List<File> sourceFiles, CompileOrder compileOrder )
+    {
+        if ( compileOrder == CompileOrder.Mixed )
+        {
+            return sourceFiles.size();
+        }
+        int result = 0;
+        for ( File sourceFile : sourceFiles )
+        {
+            if ( sourceFile.getName().endsWith( ".scala" ) )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private Set<File> getRecompiledSources( List<File> sourceFiles, sbt.inc.Analysis analysis, long compileStartTime )
+    {
+        Set<File> result = new HashSet<File>();
+        for ( File sourceFile : sourceFiles )
+        {
+            File file = sourceFile.getAbsoluteFile();
+            if ( analysis.apis().internalAPI( file ).compilation().startTime() >= compileStartTime )
+            {
+                result.add( sourceFile );
+            }
+        }
+        return result;
+    }
+
+    private void replayWarnings( List<CompilationProblem> warnings, SBT013Reporter reporter, CompilerLogger logger )
+    {
+        if ( !warnings.isEmpty() )
+        {
+            logger.info( String.format( "Reporting %d warnings of not recompiled sources", warnings.size() ) );
+            for ( CompilationProblem warning : warnings )
             {
-                String[] consoleErrorLines = sbtLogger.getConsoleErrorLines();
-                problems = getJavacProblems( consoleErrorLines );
+                reporter.replay( warning );
             }
+        }
+    }
+
+    private void flushWarnings( SBT013WarningAggregator warningAggregator, CompilerLogger logger )
+    {
+        if ( warningAggregator != null )
+        {
+            warningAggregator.printSummary( logger );
+            try
+            {
+                warningAggregator.writeWarningsFile();
+            }
+            catch ( IOException e )
+            {
+                logger.warn( String.format( "Warnings file writing failed: %s", e.getMessage() ) );
+            }
+        }
+    }
+
+    // "Compiler.create" uses javac logging problems as text, "JavaTools" reports them with "DiagnosticListener"
+    private Compiler createCompiler( Setup setup, ScalaInstance instance, SBT013Logger sbtLogger, boolean skipJavac )
+    {
+        File compilerInterfaceJar = Compiler.compilerInterface( setup, instance, sbtLogger );
+        AnalyzingCompiler scalac = Compiler.newScalaCompiler( instance, compilerInterfaceJar, sbtLogger );
+        JavaCompiler javac;
+        if ( skipJavac )
+        {
+            javac = new JavaCompiler()
+            {
+                @Deprecated
+                public void compile( File[] sources, File[] classpath, Output output, String[] options,
+                                     xsbti.Logger log )
+                {
+                    // Java sources are not compiled
+                }
 
-            throw new CompilerException( "Scala compilation failed", e, problems );
+                public void compileWithReporter( File[] sources, File[] classpath, Output output,
+                                                 String[] options, xsbti.Reporter reporter, xsbti.Logger log )
+                {
+                    // Java sources are not compiled
+                }
+            };
+        }
+        else
+        {
+            javac = JavaTools$.MODULE$.directOrFork( instance, ClasspathOptions.javac( false ),
+                                                     setup.javaHome() ).xsbtiCompiler();
         }
+        return new Compiler( scalac, javac );
     }
 
-    private IncOptions getIncOptions( CompilerConfiguration configuration )
+    // returns true if Java compiler cannot type check Java sources without Scala class files and must be skipped
+    private boolean addTypecheckOnlyOptions( List<File> sourceFiles, List<String> scalacOptions,
+                                             List<String> javacOptions )
+    {
+        boolean stopAfterSet = false;
+        for ( String option : scalacOptions )
+        {
+            if ( option.startsWith( "-Ystop-" ) )
+            {
+                stopAfterSet = true;
+            }
+        }
+        if ( !stopAfterSet )
+        {
+            // incremental compilation dependency phase needs "flatten" phase to locate classpath classes,
+            // later phases (code generation) are skipped
+            scalacOptions.add( "-Ystop-after:flatten" );
+        }
+
+        boolean scalaSources = false;
+        for ( File sourceFile : sourceFiles )
+        {
+            if ( sourceFile.getName().endsWith( ".scala" ) )
+            {
+                scalaSources = true;
+                break;
+            }
+        }
+        if ( !scalaSources )
+        {
+            // stop javac after flow analysis, hidden option names used by JDK 8 and JDK 9+
+            javacOptions.add( "-XDshouldStopPolicyIfNoError=FLOW" );
+            javacOptions.add( "-XDshould-stop.ifNoError=FLOW" );
+        }
+        return scalaSources;
+    }
+
+    private SBT013AnalysisRelocator getAnalysisRelocator( CompilerConfiguration configuration )
+    {
+        SBT013AnalysisRelocator result = null;
+        Map<String, File> relocationRoots = configuration.getAnalysisRelocationRoots();
+        if ( relocationRoots != null && !relocationRoots.isEmpty() )
+        {
+            result = new SBT013AnalysisRelocator( relocationRoots );
+        }
+        return result;
+    }
+
+    private Inputs customizeInputs( Inputs inputs, Function1<File, Function1<String, Object>> definesClass,
+                                    boolean javaOnly, CompileOrder compileOrder )
+    {
+        return new Inputs( inputs.classpath(), inputs.sources(), inputs.classesDirectory(), inputs.scalacOptions(),
+                           inputs.javacOptions(), inputs.cacheFile(), inputs.analysisMap(), inputs.forceClean(),
+                           definesClass, javaOnly, compileOrder, inputs.incOptions(), inputs.outputRelations(),
+                           inputs.outputProducts(), inputs.mirrorAnalysis() );
+    }
+
+    private IncOptions getIncOptions( CompilerConfiguration configuration, double recompileAllFraction )
     {
         // comment from SBT (sbt.inc.IncOptions.scala):
         // After which step include whole transitive closure of invalidated source files.
@@ -166,7 +610,8 @@ public class SBT013Compiler
         //
         // comment from Zinc (com.typesafe.zinc.Settings.scala):
         // Limit before recompiling all sources
-        double recompileAllFraction = 0.5d;
+        //
+        // tuned from previous compilations, see SBT013IncHistory
 
         // comment from SBT (sbt.inc.IncOptions.scala):
         // Print very detailed information about relations, such as dependencies between source files.
@@ -245,106 +690,4 @@ public class SBT013Compiler
         return 100;
     }
 
-    // scalac problems conversion
-
-    private CompilationProblem[] getScalacProblems( Problem[] problems )
-    {
-        CompilationProblem[] result = new CompilationProblem[problems.length];
-        for ( int i = 0; i < problems.length; i++ )
-        {
-            Problem problem = problems[i];
-            Position position = problem.position();
-
-            Maybe<Integer> line = position.line();
-            String lineContent = position.lineContent();
-            Maybe<Integer> offset = position.offset();
-            Maybe<Integer> pointer = position.pointer();
-            Maybe<File> sourceFile = position.sourceFile();
-            SourcePosition sp =
-                new DefaultSourcePosition( line.isDefined() ? line.get().intValue() : -1, lineContent,
-                                           offset.isDefined() ? offset.get().intValue() : -1,
-                                           pointer.isDefined() ? pointer.get().intValue() : -1,
-                                           sourceFile.isDefined() ? sourceFile.get() : null );
-            result[i] =
-                new DefaultCompilationProblem( problem.category(), problem.message(), sp, problem.severity().name() );
-        }
-        return result;
-    }
-
-    // javac problems parsing from error logs
-
-    private static final Pattern JAVAC_ERROR = Pattern.compile( "\\s*(.*[.]java):(\\d+):\\s*(.*)" );
-    private static final Pattern JAVAC_ERROR_POSITION = Pattern.compile( "(\\s*)\\^\\s*" );
-    private static final Pattern JAVAC_ERROR_INFO = Pattern.compile( "\\s+([a-z ]+):(.*)" );
-
-    private CompilationProblem[] getJavacProblems( String[] consoleErrorLines )
-    {
-        List<CompilationProblem> problems = new ArrayList<CompilationProblem>();
-
-        int i = 0;
-        while ( i < consoleErrorLines.length )
-        {
-            String line = consoleErrorLines[i];
-            Matcher matcher = JAVAC_ERROR.matcher( line );
-            if ( matcher.find() )
-            {
-                File file = new File( matcher.group( 1 ) );
-                int lineNo = Integer.parseInt( matcher.group( 2 ) );
-                String message = matcher.group( 3 );
-                if ( message.startsWith( "error: " ) )
-                {
-                    message = message.substring( "error: ".length() );
-                }
-                String lineContent = null;
-                int pointer = -1;
-                i++;
-                if ( i < consoleErrorLines.length )
-                {
-                    lineContent = consoleErrorLines[i];
-                    i++;
-                    // Java6 has different error line order - additional message lines before content and pointer 
-                    while ( i < consoleErrorLines.length )
-                    {
-                        line = consoleErrorLines[i];
-                        i++;
-                        matcher = JAVAC_ERROR_POSITION.matcher( line );
-                        if ( matcher.find() )
-                        {
-                            break;
-                        }
-                        else
-                        {
-                            message = message + "\n  " + lineContent; // this wasn't lineContent yet
-                            lineContent = line;
-                        }
-                    }
-                    pointer = matcher.group( 1 ).length();
-                    while ( i < consoleErrorLines.length )
-                    {
-                        line = consoleErrorLines[i];
-                        matcher = JAVAC_ERROR_INFO.matcher( line );
-                        if ( matcher.matches() )
-                        {
-                            message = message + '\n' + line;
-                            i++;
-                        }
-                        else
-                        {
-                            break;
-                        }
-                    }
-                }
-                SourcePosition position = new DefaultSourcePosition( lineNo, lineContent, -1, pointer, file );
-                CompilationProblem problem = new DefaultCompilationProblem( "", message, position, "Error" );
-                problems.add( problem );
-            }
-            else
-            {
-                i++;
-            }
-        }
-
-        return problems.toArray( new CompilationProblem[0] );
-    }
-
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import scala.Function1;
+import scala.runtime.AbstractFunction1;
+
+import sbt.inc.Locate;
+
+import com.google.code.sbt.compiler.api.CompilerLogger;
+
+/**
+ * SBT {@code sbt.inc.Locate.DefinesClass} function implementation with cached class name indexes of classpath jars.
+ * <br>
+ * <br>
+ * Incremental compiler opens classpath jars to find which jar defines a class a source depends on.
+ * Class name indexes are cached in memory (shared by all modules compiled in the same JVM)
+ * and on disk (shared by all builds), keyed by jar path, size and modification time,
+ * so only new or modified jars are opened.
+ * <br>
+ * Directories and files without {@code .jar} or {@code .zip} extension are handled
+ * by standard {@code sbt.inc.Locate.definesClass} function.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013DefinesClass
+    extends AbstractFunction1<File, Function1<String, Object>>
+{
+    private static final String ENCODING = "UTF-8";
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private static final ConcurrentHashMap<String, JarIndex> cachedIndexes = new ConcurrentHashMap<String, JarIndex>();
+
+    private File cacheDirectory;
+
+    private CompilerLogger logger;
+
+    /**
+     * Creates class name lookup function.
+     *
+     * @param cacheDirectory directory for class name index files
+     * @param logger {@link CompilerLogger} used to debug possible problems
+     */
+    public SBT013DefinesClass( File cacheDirectory, CompilerLogger logger )
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns function checking if a class is defined in given classpath entry.
+     *
+     * @param entry classpath entry
+     * @return function returning {@code true} if a class with given name is defined in the classpath entry
+     */
+    @Override
+    public Function1<String, Object> apply( File entry )
+    {
+        String name = entry.getName();
+        if ( !( name.endsWith( ".jar" ) || name.endsWith( ".zip" ) ) || !entry.isFile() )
+        {
+            return Locate.definesClass( entry );
+        }
+
+        final Set<String> classNames = getIndex( entry.getAbsoluteFile() ).classNames;
+        return new AbstractFunction1<String, Object>()
+        {
+            @Override
+            public Object apply( String className )
+            {
+                return Boolean.valueOf( classNames.contains( className ) );
+            }
+        };
+    }
+
+    private JarIndex getIndex( File jar )
+    {
+        String path = jar.getPath();
+        long length = jar.length();
+        long lastModified = jar.lastModified();
+
+        JarIndex index = cachedIndexes.get( path );
+        if ( index != null && index.length == length && index.lastModified == lastModified )
+        {
+            return index;
+        }
+
+        File indexFile = new File( cacheDirectory, sha1( path ) + ".idx" );
+        index = readIndex( indexFile, path, length, lastModified );
+        if ( index == null )
+        {
+            logger.debug( String.format( "Indexing \"%s\" classpath entry", path ) );
+            index = new JarIndex( length, lastModified, readClassNames( jar ) );
+            writeIndex( indexFile, path, index );
+        }
+        cachedIndexes.put( path, index );
+        return index;
+    }
+
+    private static Set<String> readClassNames( File jar )
+    {
+        Set<String> result = new HashSet<String>();
+        try
+        {
+            ZipFile zipFile = new ZipFile( jar, ZipFile.OPEN_READ );
+            try
+            {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while ( entries.hasMoreElements() )
+                {
+                    String entryName = entries.nextElement().getName();
+                    if ( entryName.endsWith( CLASS_EXTENSION ) )
+                    {
+                        result.add( entryName.substring( 0, entryName.length() - CLASS_EXTENSION.length() ).replace( '/',
+                                                                                                                    '.' ) );
+                    }
+                }
+            }
+            finally
+            {
+                zipFile.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // the same as in "sbt.inc.Locate.jarDefinesClass"
+            throw new RuntimeException( "Error opening zip file: " + jar.getName(), e );
+        }
+        return result;
+    }
+
+    // index file format: "length<TAB>lastModified<TAB>path" header line followed by class names, one per line
+    private JarIndex readIndex( File indexFile, String path, long length, long lastModified )
+    {
+        JarIndex result = null;
+        if ( indexFile.isFile() )
+        {
+            try
+            {
+                BufferedReader reader =
+                    new BufferedReader( new InputStreamReader( new FileInputStream( indexFile ), ENCODING ) );
+                try
+                {
+                    if ( ( length + "\t" + lastModified + "\t" + path ).equals( reader.readLine() ) )
+                    {
+                        Set<String> classNames = new HashSet<String>();
+                        String line = reader.readLine();
+                        while ( line != null )
+                        {
+                            classNames.add( line );
+                            line = reader.readLine();
+                        }
+                        result = new JarIndex( length, lastModified, classNames );
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.debug( e );
+            }
+        }
+        return result;
+    }
+
+    private void writeIndex( File indexFile, String path, JarIndex index )
+    {
+        if ( !cacheDirectory.isDirectory() && !cacheDirectory.mkdirs() && !cacheDirectory.isDirectory() )
+        {
+            return;
+        }
+        // write to temporary file first, index files can be shared by concurrent builds
+        File tmpFile = new File( cacheDirectory, indexFile.getName() + "." + Thread.currentThread().getId() + ".tmp" );
+        try
+        {
+            Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmpFile ), ENCODING ) );
+            try
+            {
+                writer.write( index.length + "\t" + index.lastModified + "\t" + path + "\n" );
+                for ( String className : index.classNames )
+                {
+                    writer.write( className );
+                    writer.write( '\n' );
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            if ( !tmpFile.renameTo( indexFile ) )
+            {
+                indexFile.delete();
+                if ( !tmpFile.renameTo( indexFile ) )
+                {
+                    tmpFile.delete();
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.debug( e );
+            tmpFile.delete();
+        }
+    }
+
+    private static String sha1( String value )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            return SBT013SourceHashCache.toHex( digest.digest( value.getBytes( ENCODING ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new RuntimeException( e ); // SHA-1 is required in every Java platform implementation
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new RuntimeException( e ); // UTF-8 is required in every Java platform implementation
+        }
+    }
+
+    private static class JarIndex
+    {
+        private final long length;
+
+        private final long lastModified;
+
+        private final Set<String> classNames;
+
+        JarIndex( long length, long lastModified, Set<String> classNames )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.classNames = classNames;
+        }
+    }
+
+}
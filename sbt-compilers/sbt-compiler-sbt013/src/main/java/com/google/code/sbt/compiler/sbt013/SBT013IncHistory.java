@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Incremental compilation history used to tune {@code recompileAllFraction} incremental compiler option.
+ * <br>
+ * <br>
+ * For every compilation number of sources and time of every incremental compilation cycle are recorded
+ * in a per-module file. Time per source of full compilations is used to check if incremental compilations
+ * would be faster as full ones. If an incremental compilation took more time than a full compilation
+ * would take when started in one of its cycles, the fraction is lowered, so the same number of invalidated
+ * sources causes recompilation of all sources next time. Otherwise the fraction slowly returns
+ * to its default value.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013IncHistory
+{
+    /**
+     * Default fraction of invalidated sources above which all sources are recompiled.
+     */
+    public static final double DEFAULT_RECOMPILE_ALL_FRACTION = 0.5d;
+
+    private static final double MIN_RECOMPILE_ALL_FRACTION = 0.05d;
+
+    private static final int MAX_RUNS = 10;
+
+    private static final String ENCODING = "UTF-8";
+
+    private File historyFile;
+
+    private double recompileAllFraction = DEFAULT_RECOMPILE_ALL_FRACTION;
+
+    private double fullUnitTime = -1.0d; // milliseconds per source, -1 if there was no full compilation yet
+
+    private List<String> runs = new ArrayList<String>();
+
+    private boolean modified;
+
+    /**
+     * Creates incremental compilation history.
+     *
+     * @param historyFile history file
+     */
+    public SBT013IncHistory( File historyFile )
+    {
+        this.historyFile = historyFile;
+    }
+
+    /**
+     * Reads history of previous compilations.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void load()
+        throws IOException
+    {
+        if ( historyFile.isFile() )
+        {
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( new FileInputStream( historyFile ), ENCODING ) );
+            try
+            {
+                String line = reader.readLine();
+                while ( line != null )
+                {
+                    int tab = line.indexOf( '\t' );
+                    if ( tab > 0 )
+                    {
+                        String key = line.substring( 0, tab );
+                        String value = line.substring( tab + 1 );
+                        if ( "fraction".equals( key ) )
+                        {
+                            recompileAllFraction = Double.parseDouble( value );
+                        }
+                        else if ( "fullUnitTime".equals( key ) )
+                        {
+                            fullUnitTime = Double.parseDouble( value );
+                        }
+                        else if ( "run".equals( key ) )
+                        {
+                            runs.add( value );
+                        }
+                    }
+                    line = reader.readLine();
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                // corrupted history file, start from scratch
+                recompileAllFraction = DEFAULT_RECOMPILE_ALL_FRACTION;
+                fullUnitTime = -1.0d;
+                runs.clear();
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Returns tuned fraction of invalidated sources above which all sources are recompiled.
+     *
+     * @return recompile all fraction
+     */
+    public double getRecompileAllFraction()
+    {
+        return recompileAllFraction;
+    }
+
+    /**
+     * Records incremental compilation cycles of successful compilation and tunes recompile all fraction.
+     *
+     * @param cycles number of compiled sources and time in milliseconds of every compilation cycle
+     * @param sourceCount number of all sources
+     */
+    public void record( List<long[]> cycles, int sourceCount )
+    {
+        if ( cycles.isEmpty() || sourceCount <= 0 )
+        {
+            return;
+        }
+
+        long totalTime = 0L;
+        StringBuilder run = new StringBuilder();
+        for ( long[] cycle : cycles )
+        {
+            totalTime += cycle[1];
+            if ( run.length() > 0 )
+            {
+                run.append( ' ' );
+            }
+            run.append( cycle[0] ).append( ':' ).append( cycle[1] );
+        }
+        runs.add( run.toString() );
+        while ( runs.size() > MAX_RUNS )
+        {
+            runs.remove( 0 );
+        }
+        modified = true;
+
+        long[] firstCycle = cycles.get( 0 );
+        if ( firstCycle[0] >= sourceCount )
+        {
+            if ( cycles.size() == 1 && firstCycle[0] > 0 )
+            {
+                double unitTime = (double) firstCycle[1] / firstCycle[0];
+                fullUnitTime = fullUnitTime < 0.0d ? unitTime : ( fullUnitTime + unitTime ) / 2;
+            }
+            relax();
+            return;
+        }
+        if ( fullUnitTime < 0.0d || cycles.size() == 1 )
+        {
+            relax();
+            return;
+        }
+
+        // first cycle in which switching to full compilation would be faster than continuing incrementally
+        long fullTime = (long) ( fullUnitTime * sourceCount );
+        long elapsed = 0L;
+        for ( long[] cycle : cycles )
+        {
+            if ( elapsed + fullTime < totalTime )
+            {
+                double fraction = 0.9d * cycle[0] / sourceCount;
+                recompileAllFraction =
+                    Math.max( MIN_RECOMPILE_ALL_FRACTION, Math.min( recompileAllFraction, fraction ) );
+                return;
+            }
+            elapsed += cycle[1];
+        }
+        relax();
+    }
+
+    /**
+     * Writes history file if a compilation was recorded.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void save()
+        throws IOException
+    {
+        if ( !modified )
+        {
+            return;
+        }
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( historyFile ), ENCODING ) );
+        try
+        {
+            writer.write( String.format( Locale.ENGLISH, "fraction\t%.4f\n", recompileAllFraction ) );
+            if ( fullUnitTime >= 0.0d )
+            {
+                writer.write( String.format( Locale.ENGLISH, "fullUnitTime\t%.4f\n", fullUnitTime ) );
+            }
+            for ( String run : runs )
+            {
+                writer.write( "run\t" );
+                writer.write( run );
+                writer.write( '\n' );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    // slowly return to default value
+    private void relax()
+    {
+        recompileAllFraction += ( DEFAULT_RECOMPILE_ALL_FRACTION - recompileAllFraction ) / 4;
+    }
+
+}
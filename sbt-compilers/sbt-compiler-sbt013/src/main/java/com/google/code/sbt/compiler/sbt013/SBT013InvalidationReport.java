@@ -0,0 +1,559 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import scala.collection.JavaConversions;
+
+import sbt.inc.Analysis;
+
+import xsbti.api.Source;
+import xsbti.api._internalOnly_NameHash;
+import xsbti.api._internalOnly_NameHashes;
+
+/**
+ * Incremental compilation invalidation report.
+ * <br>
+ * <br>
+ * Explains why sources were recompiled by comparing incremental compilation analysis before and after
+ * compilation. Sources recompiled in the first cycle were modified, added, or depend on changed classpath
+ * entries, changed classes of other modules or removed sources. Sources recompiled in next cycles
+ * depend on sources whose API changed in the previous cycle, by inheritance (transitively)
+ * or by member reference using a modified name. Recompiled sources not explained by these rules
+ * were recompiled because invalidated sources exceeded {@code recompileAllFraction},
+ * because of package objects, macros or compiler setup change.
+ * <br>
+ * <br>
+ * The report is written in JSON format and as a readable text summary.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013InvalidationReport
+{
+    private static final String ENCODING = "UTF-8";
+
+    private Analysis previous;
+
+    /**
+     * Creates invalidation report.
+     *
+     * @param previous analysis before compilation, {@code null} if there is no previous analysis
+     */
+    public SBT013InvalidationReport( Analysis previous )
+    {
+        this.previous = previous;
+    }
+
+    /**
+     * Writes invalidation report files.
+     *
+     * @param current analysis after compilation
+     * @param recompiledSources sources recompiled by the compilation
+     * @param cycles number of compiled units and time of every Scala compiler run
+     * @param jsonFile JSON report file
+     * @param textFile text report file
+     * @throws IOException if an I/O error occurs
+     */
+    public void write( Analysis current, Set<File> recompiledSources, List<long[]> cycles, File jsonFile,
+                       File textFile )
+        throws IOException
+    {
+        Set<File> recompiled = new TreeSet<File>();
+        for ( File sourceFile : recompiledSources )
+        {
+            recompiled.add( sourceFile.getAbsoluteFile() );
+        }
+        Set<File> allSources = JavaConversions.setAsJavaSet( current.apis().allInternalSources() );
+
+        Set<File> previousSources = new TreeSet<File>();
+        Set<File> removed = new TreeSet<File>();
+        if ( previous != null )
+        {
+            previousSources.addAll( JavaConversions.setAsJavaSet( previous.apis().allInternalSources() ) );
+            for ( File sourceFile : previousSources )
+            {
+                if ( !allSources.contains( sourceFile ) )
+                {
+                    removed.add( sourceFile );
+                }
+            }
+        }
+
+        // API changes of recompiled and removed sources
+        Map<File, Set<String>> apiChanges = new LinkedHashMap<File, Set<String>>();
+        for ( File sourceFile : recompiled )
+        {
+            if ( previousSources.contains( sourceFile ) )
+            {
+                Source before = previous.apis().internalAPI( sourceFile );
+                Source after = current.apis().internalAPI( sourceFile );
+                if ( before.apiHash() != after.apiHash() || after.hasMacro() )
+                {
+                    apiChanges.put( sourceFile, getModifiedNames( before, after ) );
+                }
+            }
+        }
+        for ( File sourceFile : removed )
+        {
+            apiChanges.put( sourceFile, getModifiedNames( previous.apis().internalAPI( sourceFile ), null ) );
+        }
+
+        // invalidation cycles
+        Map<File, Invalidation> invalidations = new LinkedHashMap<File, Invalidation>();
+        List<File> level = new ArrayList<File>();
+        for ( File sourceFile : recompiled )
+        {
+            List<String> reasons = getInitialReasons( sourceFile, previousSources, removed, current );
+            if ( !reasons.isEmpty() )
+            {
+                Invalidation invalidation = new Invalidation( 1 );
+                invalidation.reasons.addAll( reasons );
+                invalidations.put( sourceFile, invalidation );
+                level.add( sourceFile );
+            }
+        }
+        level.addAll( removed );
+        int cycle = 1;
+        while ( !level.isEmpty() )
+        {
+            List<File> nextLevel = new ArrayList<File>();
+            for ( File changed : level )
+            {
+                Set<String> modifiedNames = apiChanges.get( changed );
+                if ( modifiedNames == null )
+                {
+                    continue;
+                }
+                invalidateByInheritance( changed, changed, recompiled, invalidations, cycle + 1, nextLevel,
+                                         new TreeSet<File>() );
+                for ( File dependent : JavaConversions.setAsJavaSet( previous.relations().memberRef().internal().reverse( changed ) ) )
+                {
+                    Set<String> names = new TreeSet<String>( modifiedNames );
+                    if ( previous.relations().nameHashing() )
+                    {
+                        names.retainAll( JavaConversions.setAsJavaSet( previous.relations().names().forward( dependent ) ) );
+                        if ( names.isEmpty() && !current.apis().internalAPI( changed ).hasMacro() )
+                        {
+                            continue; // dependent does not use modified names
+                        }
+                    }
+                    addEdge( dependent, changed, "memberRef", names, recompiled, invalidations, cycle + 1,
+                             nextLevel );
+                }
+            }
+            level = nextLevel;
+            cycle++;
+        }
+
+        List<File> unexplained = new ArrayList<File>();
+        for ( File sourceFile : recompiled )
+        {
+            if ( !invalidations.containsKey( sourceFile ) )
+            {
+                unexplained.add( sourceFile );
+            }
+        }
+
+        // all sources recompiled, but not all explained by dependencies
+        boolean recompileAll = previous != null && !unexplained.isEmpty() && recompiled.size() >= allSources.size();
+
+        writeJson( jsonFile, allSources.size(), recompiled, removed, cycles, apiChanges, invalidations, unexplained,
+                   recompileAll );
+        writeText( textFile, allSources.size(), recompiled, removed, cycles, apiChanges, invalidations, unexplained,
+                   recompileAll );
+    }
+
+    private List<String> getInitialReasons( File sourceFile, Set<File> previousSources, Set<File> removed,
+                                            Analysis current )
+    {
+        List<String> result = new ArrayList<String>();
+        if ( !previousSources.contains( sourceFile ) )
+        {
+            result.add( previous != null ? "added" : "no previous analysis" );
+            return result;
+        }
+        if ( !previous.stamps().internalSource( sourceFile ).equals( current.stamps().internalSource( sourceFile ) ) )
+        {
+            result.add( "modified" );
+        }
+        for ( File binary : JavaConversions.setAsJavaSet( previous.relations().binaryDeps( sourceFile ) ) )
+        {
+            if ( !previous.stamps().binary( binary ).equals( current.stamps().binary( binary ) ) )
+            {
+                result.add( "classpath entry changed: " + binary.getPath() );
+            }
+        }
+        for ( String className : JavaConversions.setAsJavaSet( previous.relations().externalDeps( sourceFile ) ) )
+        {
+            Source before = previous.apis().externalAPI( className );
+            Source after = current.apis().externalAPI( className );
+            if ( before.apiHash() != after.apiHash() )
+            {
+                result.add( "external class API changed: " + className );
+            }
+        }
+        for ( File dependency : JavaConversions.setAsJavaSet( previous.relations().internalSrcDeps( sourceFile ) ) )
+        {
+            if ( removed.contains( dependency ) )
+            {
+                result.add( "dependency removed: " + dependency.getPath() );
+            }
+        }
+        return result;
+    }
+
+    // inheritance invalidation is transitive, sources inheriting from invalidated sources are invalidated
+    // even if their API did not change
+    private void invalidateByInheritance( File changed, File parent, Set<File> recompiled,
+                                          Map<File, Invalidation> invalidations, int cycle, List<File> nextLevel,
+                                          Set<File> visited )
+    {
+        for ( File dependent : JavaConversions.setAsJavaSet( previous.relations().inheritance().internal().reverse( parent ) ) )
+        {
+            if ( visited.add( dependent ) )
+            {
+                addEdge( dependent, parent, parent == changed ? "inheritance" : "inheritance (transitive)",
+                         Collections.<String> emptySet(), recompiled, invalidations, cycle, nextLevel );
+                invalidateByInheritance( changed, dependent, recompiled, invalidations, cycle, nextLevel, visited );
+            }
+        }
+    }
+
+    private void addEdge( File dependent, File dependency, String kind, Set<String> names, Set<File> recompiled,
+                          Map<File, Invalidation> invalidations, int cycle, List<File> nextLevel )
+    {
+        if ( !recompiled.contains( dependent ) )
+        {
+            return;
+        }
+        Invalidation invalidation = invalidations.get( dependent );
+        if ( invalidation == null )
+        {
+            invalidation = new Invalidation( cycle );
+            invalidations.put( dependent, invalidation );
+            nextLevel.add( dependent );
+        }
+        if ( invalidation.cycle == cycle )
+        {
+            invalidation.edges.add( new Edge( dependency, kind, names ) );
+        }
+    }
+
+    // names with changed hashes, all names if the source was removed
+    private static Set<String> getModifiedNames( Source before, Source after )
+    {
+        Map<String, Integer> beforeHashes = getNameHashes( before );
+        Map<String, Integer> afterHashes = after != null ? getNameHashes( after ) : new HashMap<String, Integer>();
+        Set<String> result = new TreeSet<String>();
+        for ( Map.Entry<String, Integer> entry : beforeHashes.entrySet() )
+        {
+            if ( !entry.getValue().equals( afterHashes.get( entry.getKey() ) ) )
+            {
+                result.add( entry.getKey() );
+            }
+        }
+        for ( String name : afterHashes.keySet() )
+        {
+            if ( !beforeHashes.containsKey( name ) )
+            {
+                result.add( name );
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> getNameHashes( Source source )
+    {
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        _internalOnly_NameHashes nameHashes = source._internalOnly_nameHashes();
+        if ( nameHashes != null )
+        {
+            for ( _internalOnly_NameHash nameHash : nameHashes.regularMembers() )
+            {
+                result.put( nameHash.name(), Integer.valueOf( nameHash.hash() ) );
+            }
+            for ( _internalOnly_NameHash nameHash : nameHashes.implicitMembers() )
+            {
+                Integer previousHash = result.get( nameHash.name() );
+                int hash = nameHash.hash() + ( previousHash != null ? 31 * previousHash.intValue() : 0 );
+                result.put( nameHash.name(), Integer.valueOf( hash ) );
+            }
+        }
+        return result;
+    }
+
+    private static void writeJson( File file, int sourceCount, Set<File> recompiled, Set<File> removed,
+                                   List<long[]> cycles, Map<File, Set<String>> apiChanges,
+                                   Map<File, Invalidation> invalidations, List<File> unexplained,
+                                   boolean recompileAll )
+        throws IOException
+    {
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), ENCODING ) );
+        try
+        {
+            writer.write( "{\n  \"sources\": " + sourceCount + ",\n  \"recompiled\": " + recompiled.size() + ",\n" );
+            writer.write( "  \"removed\": " );
+            writeJsonFiles( writer, removed );
+            writer.write( ",\n  \"compilerRuns\": [" );
+            for ( int i = 0; i < cycles.size(); i++ )
+            {
+                writer.write( ( i > 0 ? ", " : "" ) + "{\"units\": " + cycles.get( i )[0] + ", \"time\": "
+                    + cycles.get( i )[1] + "}" );
+            }
+            writer.write( "],\n  \"apiChanges\": [" );
+            boolean first = true;
+            for ( Map.Entry<File, Set<String>> entry : apiChanges.entrySet() )
+            {
+                writer.write( ( first ? "\n" : ",\n" ) + "    {\"source\": " + toJson( entry.getKey().getPath() )
+                    + ", \"modifiedNames\": " + toJson( entry.getValue() ) + "}" );
+                first = false;
+            }
+            writer.write( first ? "],\n" : "\n  ],\n" );
+            writer.write( "  \"cycles\": [" );
+            int cycleCount = getCycleCount( invalidations );
+            for ( int cycle = 1; cycle <= cycleCount; cycle++ )
+            {
+                writer.write( ( cycle > 1 ? "," : "" ) + "\n    {\"cycle\": " + cycle + ", \"sources\": [" );
+                first = true;
+                for ( Map.Entry<File, Invalidation> entry : invalidations.entrySet() )
+                {
+                    Invalidation invalidation = entry.getValue();
+                    if ( invalidation.cycle != cycle )
+                    {
+                        continue;
+                    }
+                    writer.write( ( first ? "\n" : ",\n" ) + "      {\"source\": " + toJson( entry.getKey().getPath() ) );
+                    if ( !invalidation.reasons.isEmpty() )
+                    {
+                        writer.write( ", \"reasons\": " + toJson( invalidation.reasons ) );
+                    }
+                    if ( !invalidation.edges.isEmpty() )
+                    {
+                        writer.write( ", \"invalidatedBy\": [" );
+                        for ( int i = 0; i < invalidation.edges.size(); i++ )
+                        {
+                            Edge edge = invalidation.edges.get( i );
+                            writer.write( ( i > 0 ? ", " : "" ) + "{\"source\": " + toJson( edge.dependency.getPath() )
+                                + ", \"kind\": " + toJson( edge.kind ) + ", \"names\": " + toJson( edge.names ) + "}" );
+                        }
+                        writer.write( "]" );
+                    }
+                    writer.write( "}" );
+                    first = false;
+                }
+                writer.write( first ? "]}" : "\n    ]}" );
+            }
+            writer.write( cycleCount > 0 ? "\n  ],\n" : "],\n" );
+            writer.write( "  \"recompileAll\": " + recompileAll + ",\n" );
+            writer.write( "  \"unexplained\": " );
+            writeJsonFiles( writer, unexplained );
+            writer.write( "\n}\n" );
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static void writeText( File file, int sourceCount, Set<File> recompiled, Set<File> removed,
+                                   List<long[]> cycles, Map<File, Set<String>> apiChanges,
+                                   Map<File, Invalidation> invalidations, List<File> unexplained,
+                                   boolean recompileAll )
+        throws IOException
+    {
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), ENCODING ) );
+        try
+        {
+            writer.write( String.format( "%d of %d sources recompiled in %d compiler runs%n", recompiled.size(),
+                                         sourceCount, cycles.size() ) );
+            for ( int i = 0; i < cycles.size(); i++ )
+            {
+                writer.write( String.format( "  run %d: %d units, %d ms%n", i + 1, cycles.get( i )[0],
+                                             cycles.get( i )[1] ) );
+            }
+            for ( File sourceFile : removed )
+            {
+                writer.write( String.format( "Removed: %s%n", sourceFile.getPath() ) );
+            }
+            if ( !apiChanges.isEmpty() )
+            {
+                writer.write( String.format( "%nAPI changes:%n" ) );
+                for ( Map.Entry<File, Set<String>> entry : apiChanges.entrySet() )
+                {
+                    writer.write( String.format( "  %s: %s%n", entry.getKey().getPath(),
+                                                 entry.getValue().isEmpty() ? "(macro or private members)"
+                                                                 : join( entry.getValue() ) ) );
+                }
+            }
+            int cycleCount = getCycleCount( invalidations );
+            for ( int cycle = 1; cycle <= cycleCount; cycle++ )
+            {
+                writer.write( String.format( "%nCycle %d:%n", cycle ) );
+                for ( Map.Entry<File, Invalidation> entry : invalidations.entrySet() )
+                {
+                    Invalidation invalidation = entry.getValue();
+                    if ( invalidation.cycle != cycle )
+                    {
+                        continue;
+                    }
+                    writer.write( String.format( "  %s%n", entry.getKey().getPath() ) );
+                    for ( String reason : invalidation.reasons )
+                    {
+                        writer.write( String.format( "      %s%n", reason ) );
+                    }
+                    for ( Edge edge : invalidation.edges )
+                    {
+                        writer.write( String.format( "      %s of %s%s%n", edge.kind, edge.dependency.getPath(),
+                                                     edge.names.isEmpty() ? "" : " using " + join( edge.names ) ) );
+                    }
+                }
+            }
+            if ( !unexplained.isEmpty() )
+            {
+                writer.write( recompileAll ? String.format( "%nRecompiled because invalidated sources exceeded"
+                    + " recompile all fraction (or package object, macro or compiler setup change):%n" )
+                                : String.format( "%nNot explained by source dependencies (package object, macro"
+                                    + " or compiler setup change):%n" ) );
+                for ( File sourceFile : unexplained )
+                {
+                    writer.write( String.format( "  %s%n", sourceFile.getPath() ) );
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static int getCycleCount( Map<File, Invalidation> invalidations )
+    {
+        int result = 0;
+        for ( Invalidation invalidation : invalidations.values() )
+        {
+            result = Math.max( result, invalidation.cycle );
+        }
+        return result;
+    }
+
+    private static void writeJsonFiles( Writer writer, Iterable<File> files )
+        throws IOException
+    {
+        List<String> paths = new ArrayList<String>();
+        for ( File file : files )
+        {
+            paths.add( file.getPath() );
+        }
+        writer.write( toJson( paths ) );
+    }
+
+    private static String toJson( Iterable<String> values )
+    {
+        StringBuilder sb = new StringBuilder( "[" );
+        for ( String value : values )
+        {
+            if ( sb.length() > 1 )
+            {
+                sb.append( ", " );
+            }
+            sb.append( toJson( value ) );
+        }
+        return sb.append( ']' ).toString();
+    }
+
+    private static String toJson( String value )
+    {
+        StringBuilder sb = new StringBuilder( value.length() + 2 ).append( '"' );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                sb.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' )
+            {
+                sb.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                sb.append( c );
+            }
+        }
+        return sb.append( '"' ).toString();
+    }
+
+    private static String join( Iterable<String> values )
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( String value : values )
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ", " );
+            }
+            sb.append( value );
+        }
+        return sb.toString();
+    }
+
+    private static class Invalidation
+    {
+        private final int cycle;
+
+        private final List<String> reasons = new ArrayList<String>();
+
+        private final List<Edge> edges = new ArrayList<Edge>();
+
+        Invalidation( int cycle )
+        {
+            this.cycle = cycle;
+        }
+    }
+
+    private static class Edge
+    {
+        private final File dependency;
+
+        private final String kind;
+
+        private final Set<String> names;
+
+        Edge( File dependency, String kind, Set<String> names )
+        {
+            this.dependency = dependency;
+            this.kind = kind;
+            this.names = names;
+        }
+    }
+
+}
@@ -17,6 +17,10 @@
 
 package com.google.code.sbt.compiler.sbt013;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import com.google.code.sbt.compiler.api.CompilerLogger;
 
 import xsbti.F0;
@@ -37,7 +41,7 @@ public class SBT013Logger
 
     private CompilerLogger compilerLogger;
 
-    private StringBuilder errors = new StringBuilder();
+    private List<Pattern> suppressedWarnings;
 
     /**
      * Creates SBT <a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Logger">xsbti.Logger</a>
@@ -46,8 +50,29 @@ public class SBT013Logger
      * @param compilerLogger {@link CompilerLogger} delegate
      */
     public SBT013Logger( CompilerLogger compilerLogger )
+    {
+        this( compilerLogger, null );
+    }
+
+    /**
+     * Creates SBT <a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Logger">xsbti.Logger</a>
+     * wrapper around {@link CompilerLogger} delegate suppressing warnings matching given regular expressions.
+     * 
+     * @param compilerLogger {@link CompilerLogger} delegate
+     * @param suppressedWarnings regular expressions of suppressed warning messages, may be {@code null}
+     */
+    public SBT013Logger( CompilerLogger compilerLogger, List<String> suppressedWarnings )
     {
         this.compilerLogger = compilerLogger;
+        this.suppressedWarnings = new ArrayList<Pattern>();
+        this.suppressedWarnings.add( Pattern.compile( Pattern.quote( MISLEADING_WARNING_MESSAGE ) ) );
+        if ( suppressedWarnings != null )
+        {
+            for ( String suppressedWarning : suppressedWarnings )
+            {
+                this.suppressedWarnings.add( Pattern.compile( suppressedWarning ) );
+            }
+        }
     }
 
     /**
@@ -61,9 +86,7 @@ public class SBT013Logger
     {
         if ( compilerLogger.isErrorEnabled() )
         {
-            String msgString = msg.apply();
-            errors.append( msgString ).append( '\n' );
-            compilerLogger.error( msgString );
+            compilerLogger.error( msg.apply() );
         }
     }
 
@@ -79,7 +102,7 @@ public class SBT013Logger
         if ( compilerLogger.isWarnEnabled() )
         {
             String msgString = msg.apply();
-            if ( !MISLEADING_WARNING_MESSAGE.equals( msgString ) )
+            if ( !isSuppressed( msgString ) )
             {
                 compilerLogger.warn( msgString );
             }
@@ -131,9 +154,22 @@ public class SBT013Logger
         }
     }
 
-    String[] getConsoleErrorLines()
+    /**
+     * Returns {@code true} if warning message matches any of suppressed warnings regular expressions.
+     * 
+     * @param msg warning message
+     * @return {@code true} if the warning should not be shown
+     */
+    boolean isSuppressed( String msg )
     {
-        return errors.toString().split( "\n" );
+        for ( Pattern suppressedWarning : suppressedWarnings )
+        {
+            if ( suppressedWarning.matcher( msg ).find() )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
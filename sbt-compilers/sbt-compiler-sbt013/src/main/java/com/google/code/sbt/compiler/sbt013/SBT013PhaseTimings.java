@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Scala compiler phase timings of previous compilations.
+ * <br>
+ * <br>
+ * Used to estimate remaining compilation time. For every phase total time and number of processed units
+ * is stored in a per-module file. Previous values are halved before values of the last compilation are added,
+ * so recent compilations have bigger weight.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013PhaseTimings
+{
+    private static final String ENCODING = "UTF-8";
+
+    private File timingsFile;
+
+    private Map<String, Timing> previous = new LinkedHashMap<String, Timing>();
+
+    private Map<String, Timing> current = new LinkedHashMap<String, Timing>();
+
+    /**
+     * Creates phase timings.
+     *
+     * @param timingsFile timings file
+     */
+    public SBT013PhaseTimings( File timingsFile )
+    {
+        this.timingsFile = timingsFile;
+    }
+
+    /**
+     * Reads timings of previous compilations.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void load()
+        throws IOException
+    {
+        previous.clear();
+        if ( timingsFile.isFile() )
+        {
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( new FileInputStream( timingsFile ), ENCODING ) );
+            try
+            {
+                String line = reader.readLine();
+                while ( line != null )
+                {
+                    String[] fields = line.split( "\t" );
+                    if ( fields.length == 3 )
+                    {
+                        previous.put( fields[0], new Timing( Long.parseLong( fields[1] ), Long.parseLong( fields[2] ) ) );
+                    }
+                    line = reader.readLine();
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                previous.clear(); // corrupted timings file, there will be no estimates
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Records time spent in a phase.
+     *
+     * @param phase phase name
+     * @param time time in milliseconds
+     * @param units number of processed units
+     */
+    public void record( String phase, long time, int units )
+    {
+        Timing timing = current.get( phase );
+        if ( timing == null )
+        {
+            timing = new Timing( 0L, 0L );
+            current.put( phase, timing );
+        }
+        timing.time += time;
+        timing.units += units;
+    }
+
+    /**
+     * Estimates remaining time of a compiler run.
+     *
+     * @param phase current phase name
+     * @param phaseUnits number of units processed in current phase
+     * @param units number of units compiled in the run
+     * @return remaining time in milliseconds or {@code -1} if there are no timings of current phase
+     */
+    public long estimate( String phase, int phaseUnits, int units )
+    {
+        Iterator<Map.Entry<String, Timing>> iterator = previous.entrySet().iterator();
+        while ( iterator.hasNext() )
+        {
+            Map.Entry<String, Timing> entry = iterator.next();
+            if ( entry.getKey().equals( phase ) )
+            {
+                double result = entry.getValue().getUnitTime() * Math.max( units - phaseUnits, 0 );
+                while ( iterator.hasNext() )
+                {
+                    result += iterator.next().getValue().getUnitTime() * units;
+                }
+                return (long) result;
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Writes timings file if any phase timing was recorded.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void save()
+        throws IOException
+    {
+        if ( current.isEmpty() )
+        {
+            return;
+        }
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( timingsFile ), ENCODING ) );
+        try
+        {
+            for ( Map.Entry<String, Timing> entry : current.entrySet() )
+            {
+                long time = entry.getValue().time;
+                long units = entry.getValue().units;
+                Timing previousTiming = previous.get( entry.getKey() );
+                if ( previousTiming != null )
+                {
+                    time += previousTiming.time / 2;
+                    units += previousTiming.units / 2;
+                }
+                writer.write( entry.getKey() );
+                writer.write( '\t' );
+                writer.write( Long.toString( time ) );
+                writer.write( '\t' );
+                writer.write( Long.toString( units ) );
+                writer.write( '\n' );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static class Timing
+    {
+        private long time;
+
+        private long units;
+
+        Timing( long time, long units )
+        {
+            this.time = time;
+            this.units = units;
+        }
+
+        double getUnitTime()
+        {
+            return units > 0 ? (double) time / units : 0.0;
+        }
+    }
+
+}
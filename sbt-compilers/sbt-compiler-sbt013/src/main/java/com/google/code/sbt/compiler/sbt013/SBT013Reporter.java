@@ -0,0 +1,390 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.code.sbt.compiler.api.CompilationProblem;
+import com.google.code.sbt.compiler.api.CompilationProblemListener;
+import com.google.code.sbt.compiler.api.DefaultCompilationProblem;
+import com.google.code.sbt.compiler.api.DefaultSourcePosition;
+import com.google.code.sbt.compiler.api.SourcePosition;
+
+import scala.Function1;
+import scala.runtime.AbstractFunction1;
+
+import xsbti.F0;
+import xsbti.Maybe;
+import xsbti.Position;
+import xsbti.Problem;
+import xsbti.Reporter;
+import xsbti.Severity;
+
+/**
+ * SBT <a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Reporter">xsbti.Reporter</a>
+ * reporting Scala and Java compilation errors/warnings as they arrive.
+ * <br>
+ * <br>
+ * Problem positions are mapped with source position mapper, problems are printed
+ * by <a href="http://www.scala-sbt.org/0.13.15/api/index.html#sbt.LoggerReporter">sbt.LoggerReporter</a>
+ * delegate and passed to optional {@link CompilationProblemListener}.
+ * <br>
+ * Suppressed warnings (see {@link SBT013Logger}) are not printed. If {@link SBT013WarningAggregator}
+ * is used, only first examples of every warning group are printed.
+ * <br>
+ * Problems may be held back (see {@link #holdProblems()}) when it is not known yet
+ * whether they will be reported, for example when failed compilation may be retried.
+ * 
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013Reporter
+    implements Reporter
+{
+    private Reporter delegate;
+
+    private SBT013Logger logger;
+
+    private Function1<Position, Position> sourcePositionMapper;
+
+    private CompilationProblemListener problemListener;
+
+    private SBT013WarningAggregator warningAggregator;
+
+    private List<Problem> problems = new ArrayList<Problem>();
+
+    private Map<File, List<CompilationProblem>> reportedWarnings = new HashMap<File, List<CompilationProblem>>();
+
+    private boolean warnings;
+
+    private int errorCount;
+
+    private List<Problem> heldProblems; // null if problems are not held back
+
+    private boolean summaryHeld;
+
+    /**
+     * Creates reporter.
+     * 
+     * @param maximumErrors maximum number of printed errors
+     * @param logger SBT logger
+     * @param sourcePositionMapper source position mapper
+     * @param problemListener compilation problem listener, may be {@code null}
+     * @param warningAggregator warning aggregator, may be {@code null}
+     */
+    public SBT013Reporter( int maximumErrors, SBT013Logger logger, Function1<Position, Position> sourcePositionMapper,
+                           CompilationProblemListener problemListener, SBT013WarningAggregator warningAggregator )
+    {
+        this.delegate =
+            new sbt.LoggerReporter( maximumErrors, sbt.Logger$.MODULE$.xlog2Log( logger ), new IdentityMapper() );
+        this.logger = logger;
+        this.sourcePositionMapper = sourcePositionMapper;
+        this.problemListener = problemListener;
+        this.warningAggregator = warningAggregator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        delegate.reset();
+        problems.clear();
+        reportedWarnings.clear();
+        warnings = false;
+        errorCount = 0;
+        if ( heldProblems != null )
+        {
+            heldProblems.clear();
+        }
+        summaryHeld = false;
+        if ( warningAggregator != null )
+        {
+            warningAggregator.reset();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasErrors()
+    {
+        return errorCount > 0; // held back errors are not passed to the delegate
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasWarnings()
+    {
+        return warnings;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printSummary()
+    {
+        if ( heldProblems != null )
+        {
+            summaryHeld = true;
+            return;
+        }
+        // delegate counts printed problems only
+        int warningCount = 0;
+        int errorCount = 0;
+        for ( Problem problem : problems )
+        {
+            if ( problem.severity() == Severity.Warn )
+            {
+                warningCount++;
+            }
+            else if ( problem.severity() == Severity.Error )
+            {
+                errorCount++;
+            }
+        }
+        if ( warningCount > 0 )
+        {
+            logger.warn( f0( sbt.LoggerReporter.countElementsAsString( warningCount, "warning" ) + " found" ) );
+        }
+        if ( errorCount > 0 )
+        {
+            logger.error( f0( sbt.LoggerReporter.countElementsAsString( errorCount, "error" ) + " found" ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Problem[] problems()
+    {
+        return problems.toArray( new Problem[problems.size()] );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void log( Position pos, String msg, Severity sev )
+    {
+        Position mappedPos = sourcePositionMapper.apply( pos );
+        String trimmedMsg = trimLeadingWhitespace( msg ); // javac messages start with a space
+        CompilationProblem compilationProblem = report( mappedPos, trimmedMsg, sev );
+        if ( sev == Severity.Warn && pos.sourceFile().isDefined() )
+        {
+            File sourceFile = pos.sourceFile().get();
+            List<CompilationProblem> sourceWarnings = reportedWarnings.get( sourceFile );
+            if ( sourceWarnings == null )
+            {
+                sourceWarnings = new ArrayList<CompilationProblem>();
+                reportedWarnings.put( sourceFile, sourceWarnings );
+            }
+            sourceWarnings.add( compilationProblem != null ? compilationProblem
+                            : toCompilationProblem( "", trimmedMsg, mappedPos, sev ) );
+        }
+    }
+
+    /**
+     * Reports warning from previous compilation again.
+     * 
+     * @param warning warning with already mapped position
+     */
+    public void replay( CompilationProblem warning )
+    {
+        report( new SBT013Position( warning.getPosition() ), warning.getMessage(), Severity.Warn );
+    }
+
+    /**
+     * Starts holding back problems. Held problems are recorded, but not printed and not passed to the listener
+     * until {@link #releaseProblems()} is invoked. {@link #reset()} discards them.
+     */
+    void holdProblems()
+    {
+        heldProblems = new ArrayList<Problem>();
+    }
+
+    /**
+     * Stops holding back problems and reports held problems.
+     */
+    void releaseProblems()
+    {
+        if ( heldProblems != null )
+        {
+            List<Problem> held = heldProblems;
+            heldProblems = null;
+            for ( Problem problem : held )
+            {
+                emit( problem.position(), problem.message(), problem.severity() );
+            }
+            if ( summaryHeld )
+            {
+                summaryHeld = false;
+                printSummary();
+            }
+        }
+    }
+
+    /**
+     * Returns warnings reported since last reset, keyed by compiled (not mapped) source file.
+     * 
+     * @return reported warnings
+     */
+    Map<File, List<CompilationProblem>> getReportedWarnings()
+    {
+        return reportedWarnings;
+    }
+
+    /**
+     * Returns number of errors reported since last reset.
+     * 
+     * @return number of reported errors
+     */
+    int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    // returns problem passed to the listener or null if there is no listener or the problem is held back
+    private CompilationProblem report( Position mappedPos, String msg, Severity sev )
+    {
+        Problem problem = sbt.Logger$.MODULE$.problem( "", mappedPos, msg, sev );
+        problems.add( problem );
+        if ( sev == Severity.Warn )
+        {
+            warnings = true;
+        }
+        else if ( sev == Severity.Error )
+        {
+            errorCount++;
+        }
+        if ( heldProblems != null )
+        {
+            heldProblems.add( problem );
+            return null;
+        }
+        return emit( mappedPos, msg, sev );
+    }
+
+    private CompilationProblem emit( Position mappedPos, String msg, Severity sev )
+    {
+        if ( sev == Severity.Warn )
+        {
+            if ( !logger.isSuppressed( msg )
+                && ( warningAggregator == null || warningAggregator.add( mappedPos, msg ) ) )
+            {
+                delegate.log( mappedPos, msg, sev );
+            }
+        }
+        else
+        {
+            delegate.log( mappedPos, msg, sev );
+        }
+        CompilationProblem result = null;
+        if ( problemListener != null )
+        {
+            result = toCompilationProblem( "", msg, mappedPos, sev );
+            problemListener.problemReported( result );
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void comment( Position pos, String msg )
+    {
+        delegate.comment( pos, msg );
+    }
+
+    /**
+     * Converts SBT problems to {@link CompilationProblem}s.
+     * 
+     * @param problems SBT problems
+     * @return compilation problems
+     */
+    public static CompilationProblem[] toCompilationProblems( Problem[] problems )
+    {
+        CompilationProblem[] result = new CompilationProblem[problems.length];
+        for ( int i = 0; i < problems.length; i++ )
+        {
+            Problem problem = problems[i];
+            result[i] =
+                toCompilationProblem( problem.category(), problem.message(), problem.position(), problem.severity() );
+        }
+        return result;
+    }
+
+    private static CompilationProblem toCompilationProblem( String category, String message, Position position,
+                                                            Severity severity )
+    {
+        Maybe<Integer> line = position.line();
+        String lineContent = position.lineContent();
+        Maybe<Integer> offset = position.offset();
+        Maybe<Integer> pointer = position.pointer();
+        Maybe<File> sourceFile = position.sourceFile();
+        SourcePosition sp =
+            new DefaultSourcePosition( line.isDefined() ? line.get().intValue() : -1, lineContent,
+                                       offset.isDefined() ? offset.get().intValue() : -1,
+                                       pointer.isDefined() ? pointer.get().intValue() : -1,
+                                       sourceFile.isDefined() ? sourceFile.get() : null );
+        return new DefaultCompilationProblem( category, message, sp, severity.name() );
+    }
+
+    private static F0<String> f0( final String msg )
+    {
+        return new F0<String>()
+        {
+            public String apply()
+            {
+                return msg;
+            }
+        };
+    }
+
+    private static String trimLeadingWhitespace( String msg )
+    {
+        int i = 0;
+        while ( i < msg.length() && msg.charAt( i ) == ' ' )
+        {
+            i++;
+        }
+        return i > 0 ? msg.substring( i ) : msg;
+    }
+
+    // positions are already mapped when passed to the delegate
+    private static class IdentityMapper
+        extends AbstractFunction1<Position, Position>
+    {
+        @Override
+        public Position apply( Position position )
+        {
+            return position;
+        }
+    }
+
+}
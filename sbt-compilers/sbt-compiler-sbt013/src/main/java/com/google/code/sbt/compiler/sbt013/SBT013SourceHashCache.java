@@ -0,0 +1,321 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Source files content hashes cache.
+ * <br>
+ * <br>
+ * Computes SHA-1 hashes of source files contents (the same hashes SBT stores as source stamps
+ * in the analysis) in a thread pool. Computed hashes are stored in a per-module cache file
+ * keyed by file path, size and last modification time, so unchanged files are not read again.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013SourceHashCache
+{
+    private static final String ENCODING = "UTF-8";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private File cacheFile;
+
+    private Map<String, Entry> entries;
+
+    private boolean modified;
+
+    /**
+     * Creates source files content hashes cache.
+     *
+     * @param cacheFile cache file
+     */
+    public SBT013SourceHashCache( File cacheFile )
+    {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns hexadecimal SHA-1 hashes of source files contents. Hashes of new and modified files are computed
+     * in parallel.
+     *
+     * @param sourceFiles source files
+     * @return source file hashes in source files order
+     * @throws IOException if an I/O error occurs
+     */
+    public Map<File, String> getHashes( List<File> sourceFiles )
+        throws IOException
+    {
+        if ( entries == null )
+        {
+            entries = load();
+        }
+
+        Map<File, String> result = new LinkedHashMap<File, String>( sourceFiles.size() * 4 / 3 + 1 );
+        List<File> toHash = new ArrayList<File>();
+        for ( File sourceFile : sourceFiles )
+        {
+            Entry entry = entries.get( sourceFile.getAbsolutePath() );
+            if ( entry != null && entry.length == sourceFile.length() && entry.lastModified == sourceFile.lastModified() )
+            {
+                result.put( sourceFile, entry.hash );
+            }
+            else
+            {
+                result.put( sourceFile, null );
+                toHash.add( sourceFile );
+            }
+        }
+
+        if ( !toHash.isEmpty() )
+        {
+            for ( Map.Entry<File, Entry> computed : computeHashes( toHash ).entrySet() )
+            {
+                entries.put( computed.getKey().getAbsolutePath(), computed.getValue() );
+                result.put( computed.getKey(), computed.getValue().hash );
+            }
+            modified = true;
+        }
+        if ( entries.size() > sourceFiles.size() ) // remove deleted files
+        {
+            Map<String, Entry> retained = new HashMap<String, Entry>( sourceFiles.size() * 4 / 3 + 1 );
+            for ( File sourceFile : sourceFiles )
+            {
+                String path = sourceFile.getAbsolutePath();
+                retained.put( path, entries.get( path ) );
+            }
+            entries = retained;
+            modified = true;
+        }
+        return result;
+    }
+
+    /**
+     * Writes cache file if any hash was computed since it was read.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void save()
+        throws IOException
+    {
+        if ( modified )
+        {
+            Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( cacheFile ), ENCODING ) );
+            try
+            {
+                for ( Map.Entry<String, Entry> mapEntry : entries.entrySet() )
+                {
+                    Entry entry = mapEntry.getValue();
+                    writer.write( entry.hash );
+                    writer.write( '\t' );
+                    writer.write( Long.toString( entry.length ) );
+                    writer.write( '\t' );
+                    writer.write( Long.toString( entry.lastModified ) );
+                    writer.write( '\t' );
+                    writer.write( mapEntry.getKey() );
+                    writer.write( '\n' );
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            modified = false;
+        }
+    }
+
+    private Map<String, Entry> load()
+        throws IOException
+    {
+        Map<String, Entry> result = new HashMap<String, Entry>();
+        if ( cacheFile.isFile() )
+        {
+            BufferedReader reader =
+                new BufferedReader( new InputStreamReader( new FileInputStream( cacheFile ), ENCODING ) );
+            try
+            {
+                String line = reader.readLine();
+                while ( line != null )
+                {
+                    String[] fields = line.split( "\t", 4 );
+                    if ( fields.length == 4 )
+                    {
+                        result.put( fields[3],
+                                    new Entry( Long.parseLong( fields[1] ), Long.parseLong( fields[2] ), fields[0] ) );
+                    }
+                    line = reader.readLine();
+                }
+            }
+            catch ( NumberFormatException e )
+            {
+                result.clear(); // corrupted cache file, all hashes will be recomputed
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        return result;
+    }
+
+    private static Map<File, Entry> computeHashes( List<File> files )
+        throws IOException
+    {
+        Map<File, Entry> result = new HashMap<File, Entry>( files.size() * 4 / 3 + 1 );
+        int threads = Math.min( Runtime.getRuntime().availableProcessors(), files.size() );
+        if ( threads <= 1 )
+        {
+            for ( File file : files )
+            {
+                result.put( file, hash( file ) );
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Entry>> futures = new ArrayList<Future<Entry>>( files.size() );
+            for ( final File file : files )
+            {
+                futures.add( executor.submit( new Callable<Entry>()
+                {
+                    public Entry call()
+                        throws IOException
+                    {
+                        return hash( file );
+                    }
+                } ) );
+            }
+            for ( int i = 0; i < files.size(); i++ )
+            {
+                result.put( files.get( i ), futures.get( i ).get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Source files hashing interrupted" );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private static Entry hash( File file )
+        throws IOException
+    {
+        // read stamps before content, modification during hashing will be detected next time
+        long length = file.length();
+        long lastModified = file.lastModified();
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new RuntimeException( e ); // SHA-1 is required in every Java platform implementation
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            int n = is.read( buf );
+            while ( n != -1 )
+            {
+                digest.update( buf, 0, n );
+                n = is.read( buf );
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+        return new Entry( length, lastModified, toHex( digest.digest() ) );
+    }
+
+    /**
+     * Converts bytes to lower case hexadecimal string.
+     *
+     * @param bytes bytes to convert
+     * @return hexadecimal string
+     */
+    static String toHex( byte[] bytes )
+    {
+        char[] result = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            result[2 * i] = HEX_DIGITS[( bytes[i] >> 4 ) & 0x0f];
+            result[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String( result );
+    }
+
+    private static class Entry
+    {
+        private final long length;
+
+        private final long lastModified;
+
+        private final String hash;
+
+        Entry( long length, long lastModified, String hash )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+}
@@ -18,6 +18,9 @@
 package com.google.code.sbt.compiler.sbt013;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import scala.runtime.AbstractFunction1;
 
@@ -28,11 +31,18 @@ import com.google.code.sbt.compiler.api.CompilerLogger;
 import com.google.code.sbt.compiler.api.DefaultSourcePosition;
 import com.google.code.sbt.compiler.api.SourcePosition;
 import com.google.code.sbt.compiler.api.SourcePositionMapper;
+import com.google.code.sbt.compiler.api.SourceText;
+import com.google.code.sbt.compiler.api.SourceTextCache;
 
 /**
  * SBT (<a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Position">xsbti.Position</a>) =&gt;
  * <a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Position">xsbti.Position</a>
  * wrapper around {@link SourcePositionMapper} delegate.
+ * <br>
+ * <br>
+ * Mapping results are memoized by source file and offset (or line and pointer if offset is not known).
+ * Missing pointers of positions with known offset (reported by Java compiler) are computed
+ * using {@link SourceTextCache}.
  * 
  * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
  */
@@ -40,8 +50,12 @@ public class SBT013SourcePositionMapper extends AbstractFunction1<Position, Posi
 {
     private SourcePositionMapper mapper;
 
+    private String charsetName;
+
     private CompilerLogger logger;
 
+    private Map<String, Position> mappedPositions = new HashMap<String, Position>();
+
     /**
      * Creates SBT
      * (<a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Position">xsbti.Position</a>) =&gt;
@@ -52,8 +66,24 @@ public class SBT013SourcePositionMapper extends AbstractFunction1<Position, Posi
      * @param logger {@link CompilerLogger} used to debug possible problems
      */
     public SBT013SourcePositionMapper( SourcePositionMapper mapper, CompilerLogger logger )
+    {
+        this( mapper, null, logger );
+    }
+
+    /**
+     * Creates SBT
+     * (<a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Position">xsbti.Position</a>) =&gt;
+     * <a href="http://www.scala-sbt.org/0.13.15/api/index.html#xsbti.Position">xsbti.Position</a>
+     * wrapper around {@link SourcePositionMapper} delegate.
+     * 
+     * @param mapper {@link SourcePositionMapper} delegate
+     * @param charsetName source files character set name, platform default character set is used if {@code null}
+     * @param logger {@link CompilerLogger} used to debug possible problems
+     */
+    public SBT013SourcePositionMapper( SourcePositionMapper mapper, String charsetName, CompilerLogger logger )
     {
         this.mapper = mapper;
+        this.charsetName = charsetName;
         this.logger = logger;
     }
 
@@ -75,26 +105,45 @@ public class SBT013SourcePositionMapper extends AbstractFunction1<Position, Posi
      */
     @Override
     public Position apply( Position position )
+    {
+        Maybe<File> sourceFile = position.sourceFile();
+        if ( !sourceFile.isDefined() )
+        {
+            return position;
+        }
+        Maybe<Integer> offset = position.offset();
+        String key =
+            offset.isDefined() ? sourceFile.get().getPath() + ':' + offset.get()
+                            : sourceFile.get().getPath() + '|' + valueOf( position.line() ) + '|'
+                                + valueOf( position.pointer() );
+        Position result = mappedPositions.get( key );
+        if ( result == null )
+        {
+            result = map( position );
+            mappedPositions.put( key, result );
+        }
+        return result;
+    }
+
+    private Position map( Position position )
     {
         Position result = position;
+        Maybe<Integer> line = position.line();
+        String lineContent = position.lineContent();
+        Maybe<Integer> offset = position.offset();
+        Maybe<Integer> pointer = position.pointer();
+        Maybe<File> sourceFile = position.sourceFile();
         if ( mapper != null )
         {
-            Maybe<Integer> line = position.line();
-            String lineContent = position.lineContent();
-            Maybe<Integer> offset = position.offset();
-            Maybe<Integer> pointer = position.pointer();
-            Maybe<File> sourceFile = position.sourceFile();
             SourcePosition sp =
-                new DefaultSourcePosition( line.isDefined() ? line.get().intValue() : -1, lineContent,
-                                           offset.isDefined() ? offset.get().intValue() : -1,
-                                           pointer.isDefined() ? pointer.get().intValue() : -1,
-                                           sourceFile.isDefined() ? sourceFile.get() : null );
+                new DefaultSourcePosition( valueOf( line ), lineContent, valueOf( offset ), valueOf( pointer ),
+                                           sourceFile.get() );
             try
             {
                 SourcePosition mappedPosition = mapper.map( sp );
                 if ( mappedPosition != null )
                 {
-                    result = new SBT013Position( mappedPosition );
+                    return new SBT013Position( mappedPosition );
                 }
             }
             catch ( Throwable t )
@@ -102,7 +151,32 @@ public class SBT013SourcePositionMapper extends AbstractFunction1<Position, Posi
                 logger.debug( t );
             }
         }
+        if ( !pointer.isDefined() && offset.isDefined() && sourceFile.get().isFile() )
+        {
+            try
+            {
+                SourceText text = SourceTextCache.getDefault().get( sourceFile.get(), charsetName );
+                int offsetValue = offset.get().intValue();
+                int lineNumber = text.getLineNumber( offsetValue );
+                if ( lineNumber > 0 )
+                {
+                    result =
+                        new SBT013Position( new DefaultSourcePosition( lineNumber, text.getLineContent( lineNumber ),
+                                                                       offsetValue, text.getColumn( offsetValue ),
+                                                                       sourceFile.get() ) );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.debug( e );
+            }
+        }
         return result;
     }
 
-}
\ No newline at end of file
+    private static int valueOf( Maybe<Integer> value )
+    {
+        return value.isDefined() ? value.get().intValue() : -1;
+    }
+
+}
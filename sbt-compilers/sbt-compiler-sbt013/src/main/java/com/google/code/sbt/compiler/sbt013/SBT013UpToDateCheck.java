@@ -0,0 +1,430 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import scala.collection.JavaConversions;
+
+import sbt.inc.Hash;
+import sbt.inc.LastModified;
+import sbt.inc.Stamp;
+
+import xsbti.api.Source;
+
+import com.google.code.sbt.compiler.api.CompilerConfiguration;
+
+/**
+ * Fast up to date check performed before incremental compiler is started.
+ * <br>
+ * <br>
+ * After successful compilation the state is recorded: compilation context (compiler jars, options,
+ * classpath entries and analysis cache file fingerprints), source hashes and product time stamps
+ * from the analysis. Compilation is up to date if the context did not change, all products are unchanged
+ * and content hashes of current source files (see {@link SBT013SourceHashCache}) are equal to the recorded ones.
+ * No analysis needs to be read for this check.
+ * <br>
+ * <br>
+ * Hash of module's public API (API hashes of all sources) is recorded next to the analysis cache file.
+ * Classpath entries with recorded API hash (upstream reactor modules) are represented in the context
+ * by this hash instead of their analysis cache file fingerprint, so implementation only changes
+ * in upstream modules do not make downstream modules out of date.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013UpToDateCheck
+{
+    private static final String ENCODING = "UTF-8";
+
+    private static final String CONTEXT_PREFIX = "C\t";
+
+    private static final String SOURCE_PREFIX = "S\t";
+
+    private static final String PRODUCT_PREFIX = "P\t";
+
+    private static final String API_HASH_SUFFIX = ".api";
+
+    private CompilerConfiguration configuration;
+
+    private List<String> scalacOptions;
+
+    private List<String> javacOptions;
+
+    private String compileOrder;
+
+    private List<String> context;
+
+    private File stateFile;
+
+    private SBT013SourceHashCache sourceHashCache;
+
+    /**
+     * Creates up to date check.
+     *
+     * @param configuration compiler configuration
+     * @param scalacOptions resolved Scala compiler options
+     * @param javacOptions resolved Java compiler options
+     * @param compileOrder compile order
+     */
+    public SBT013UpToDateCheck( CompilerConfiguration configuration, List<String> scalacOptions,
+                                List<String> javacOptions, String compileOrder )
+    {
+        this.configuration = configuration;
+        this.scalacOptions = scalacOptions;
+        this.javacOptions = javacOptions;
+        this.compileOrder = compileOrder;
+        File analysisCacheFile = configuration.getAnalysisCacheFile();
+        this.stateFile = new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + ".uptodate" );
+        this.sourceHashCache =
+            new SBT013SourceHashCache( new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName()
+                + ".hashes" ) );
+        this.context = getContext();
+    }
+
+    /**
+     * Checks whether compilation is up to date.
+     *
+     * @return {@code true} if nothing changed since last successful compilation
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean isUpToDate()
+        throws IOException
+    {
+        if ( context == null || !stateFile.isFile() )
+        {
+            return false;
+        }
+
+        List<String> recordedContext = new ArrayList<String>();
+        Map<String, String> recordedSources = new HashMap<String, String>();
+        BufferedReader reader =
+            new BufferedReader( new InputStreamReader( new FileInputStream( stateFile ), ENCODING ) );
+        try
+        {
+            String line = reader.readLine();
+            while ( line != null )
+            {
+                if ( line.startsWith( CONTEXT_PREFIX ) )
+                {
+                    recordedContext.add( line.substring( CONTEXT_PREFIX.length() ) );
+                }
+                else
+                {
+                    if ( !recordedContext.equals( context ) )
+                    {
+                        return false;
+                    }
+                    int tab = line.indexOf( '\t', 2 );
+                    String value = line.substring( 2, tab );
+                    String path = line.substring( tab + 1 );
+                    if ( line.startsWith( SOURCE_PREFIX ) )
+                    {
+                        recordedSources.put( path, value );
+                    }
+                    else if ( line.startsWith( PRODUCT_PREFIX )
+                        && new File( path ).lastModified() != Long.parseLong( value ) )
+                    {
+                        return false;
+                    }
+                }
+                line = reader.readLine();
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        if ( !recordedContext.equals( context ) || recordedSources.size() != configuration.getSourceFiles().size() )
+        {
+            return false;
+        }
+        Map<File, String> hashes = sourceHashCache.getHashes( configuration.getSourceFiles() );
+        sourceHashCache.save();
+        for ( Map.Entry<File, String> entry : hashes.entrySet() )
+        {
+            if ( !entry.getValue().equals( recordedSources.get( entry.getKey().getAbsolutePath() ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the state after successful compilation.
+     *
+     * @param analysis analysis returned by the incremental compiler
+     * @throws IOException if an I/O error occurs
+     */
+    public void record( sbt.inc.Analysis analysis )
+        throws IOException
+    {
+        if ( context == null )
+        {
+            return;
+        }
+
+        // analysis cache file was just written, its fingerprint must be recomputed
+        context = getContext();
+        Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( stateFile ), ENCODING ) );
+        try
+        {
+            for ( String contextLine : context )
+            {
+                writer.write( CONTEXT_PREFIX );
+                writer.write( contextLine );
+                writer.write( '\n' );
+            }
+            for ( Map.Entry<File, Stamp> entry : JavaConversions.mapAsJavaMap( analysis.stamps().sources() ).entrySet() )
+            {
+                Stamp stamp = entry.getValue();
+                if ( stamp instanceof Hash )
+                {
+                    writeLine( writer, SOURCE_PREFIX, SBT013SourceHashCache.toHex( ( (Hash) stamp ).value() ),
+                               entry.getKey() );
+                }
+            }
+            for ( Map.Entry<File, Stamp> entry : JavaConversions.mapAsJavaMap( analysis.stamps().products() ).entrySet() )
+            {
+                Stamp stamp = entry.getValue();
+                if ( stamp instanceof LastModified )
+                {
+                    writeLine( writer, PRODUCT_PREFIX, Long.toString( ( (LastModified) stamp ).value() ),
+                               entry.getKey() );
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        writeApiHash( analysis );
+    }
+
+    // API hash file format: "length<TAB>lastModified<TAB>hash" of the analysis cache file the hash was computed for
+    private void writeApiHash( sbt.inc.Analysis analysis )
+        throws IOException
+    {
+        File analysisCacheFile = configuration.getAnalysisCacheFile();
+        Writer writer =
+            new OutputStreamWriter( new FileOutputStream( new File( analysisCacheFile.getParentFile(),
+                                                                    analysisCacheFile.getName() + API_HASH_SUFFIX ) ),
+                                    ENCODING );
+        try
+        {
+            writer.write( analysisCacheFile.length() + "\t" + analysisCacheFile.lastModified() + "\t"
+                + getApiHash( analysis ) + "\n" );
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    // returns null if there is no API hash recorded for current analysis cache file
+    private static String readApiHash( File analysisCacheFile )
+    {
+        File apiHashFile = new File( analysisCacheFile.getParentFile(), analysisCacheFile.getName() + API_HASH_SUFFIX );
+        String result = null;
+        if ( apiHashFile.isFile() )
+        {
+            try
+            {
+                BufferedReader reader =
+                    new BufferedReader( new InputStreamReader( new FileInputStream( apiHashFile ), ENCODING ) );
+                try
+                {
+                    String line = reader.readLine();
+                    String prefix = analysisCacheFile.length() + "\t" + analysisCacheFile.lastModified() + "\t";
+                    if ( line != null && line.startsWith( prefix ) )
+                    {
+                        result = line.substring( prefix.length() );
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // fingerprint of the analysis cache file will be used
+            }
+        }
+        return result;
+    }
+
+    // hash of API hashes of all sources, sources with macro definitions are represented by their content hashes
+    // (incremental compiler recompiles dependent sources when they change)
+    private static String getApiHash( sbt.inc.Analysis analysis )
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new RuntimeException( e ); // SHA-1 is required in every Java platform implementation
+        }
+        Map<String, Source> sources = new TreeMap<String, Source>();
+        for ( Map.Entry<File, Source> entry : JavaConversions.mapAsJavaMap( analysis.apis().internal() ).entrySet() )
+        {
+            sources.put( entry.getKey().getAbsolutePath(), entry.getValue() );
+        }
+        for ( Map.Entry<String, Source> entry : sources.entrySet() )
+        {
+            Source source = entry.getValue();
+            try
+            {
+                digest.update( entry.getKey().getBytes( ENCODING ) );
+            }
+            catch ( UnsupportedEncodingException e )
+            {
+                throw new RuntimeException( e ); // UTF-8 is required in every Java platform implementation
+            }
+            int apiHash = source.apiHash();
+            digest.update( new byte[] { (byte) ( apiHash >>> 24 ), (byte) ( apiHash >>> 16 ), (byte) ( apiHash >>> 8 ),
+                (byte) apiHash } );
+            if ( source.hasMacro() )
+            {
+                digest.update( source.hash() );
+            }
+        }
+        return SBT013SourceHashCache.toHex( digest.digest() );
+    }
+
+    private static void writeLine( Writer writer, String prefix, String value, File file )
+        throws IOException
+    {
+        writer.write( prefix );
+        writer.write( value );
+        writer.write( '\t' );
+        writer.write( file.getAbsolutePath() );
+        writer.write( '\n' );
+    }
+
+    // returns null if any classpath entry state cannot be determined
+    private List<String> getContext()
+    {
+        List<String> result = new ArrayList<String>();
+        result.add( "output=" + configuration.getOutputDirectory().getAbsolutePath() );
+        result.add( "order=" + compileOrder );
+        for ( String option : scalacOptions )
+        {
+            result.add( "scalac=" + option );
+        }
+        for ( String option : javacOptions )
+        {
+            result.add( "javac=" + option );
+        }
+        result.add( "java.home=" + System.getProperty( "java.home" ) );
+        result.add( "compiler=" + fingerprint( configuration.getScalaCompilerFile() ) );
+        result.add( "compiler=" + fingerprint( configuration.getScalaLibraryFile() ) );
+        if ( configuration.getScalaExtraJarFiles() != null )
+        {
+            for ( File file : configuration.getScalaExtraJarFiles() )
+            {
+                result.add( "compiler=" + fingerprint( file ) );
+            }
+        }
+        result.add( "compiler=" + fingerprint( configuration.getXsbtiFile() ) );
+        result.add( "compiler=" + fingerprint( configuration.getCompilerInterfaceSrcFile() ) );
+        result.add( "analysis=" + fingerprint( configuration.getAnalysisCacheFile() ) );
+        for ( File classpathFile : configuration.getClasspathFiles() )
+        {
+            if ( classpathFile.isDirectory() )
+            {
+                File classpathAnalysisCacheFile = getAnalysisCacheFile( classpathFile );
+                if ( classpathAnalysisCacheFile == null )
+                {
+                    return null; // directory without analysis, its content cannot be verified cheaply
+                }
+                if ( !addApiHash( result, classpathAnalysisCacheFile ) )
+                {
+                    result.add( "classpath=" + classpathFile.getAbsolutePath() + '|'
+                        + fingerprint( classpathAnalysisCacheFile ) );
+                }
+            }
+            else
+            {
+                File classpathAnalysisCacheFile = getAnalysisCacheFile( classpathFile );
+                if ( classpathAnalysisCacheFile == null || !addApiHash( result, classpathAnalysisCacheFile ) )
+                {
+                    result.add( "classpath=" + fingerprint( classpathFile ) );
+                }
+            }
+        }
+        return result;
+    }
+
+    // upstream module is represented by its API hash, independent of its artifact form (classes directory or jar)
+    private static boolean addApiHash( List<String> context, File analysisCacheFile )
+    {
+        String apiHash = readApiHash( analysisCacheFile );
+        if ( apiHash != null )
+        {
+            context.add( "classpath-api=" + analysisCacheFile.getAbsolutePath() + '|' + apiHash );
+        }
+        return apiHash != null;
+    }
+
+    private File getAnalysisCacheFile( File classpathEntry )
+    {
+        File result = null;
+        Map<File, File> analysisCacheMap = configuration.getAnalysisCacheMap();
+        if ( analysisCacheMap != null )
+        {
+            result = analysisCacheMap.get( classpathEntry );
+        }
+        if ( result == null )
+        {
+            // Zinc's default analysis cache location
+            File defaultAnalysisCacheFile =
+                new File( new File( classpathEntry.getParentFile(), "cache" ), classpathEntry.getName() );
+            if ( defaultAnalysisCacheFile.isFile() )
+            {
+                result = defaultAnalysisCacheFile;
+            }
+        }
+        return result;
+    }
+
+    private static String fingerprint( File file )
+    {
+        return file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.code.sbt.compiler.api.CompilerLogger;
+
+import xsbti.Maybe;
+import xsbti.Position;
+
+/**
+ * Compilation warnings aggregator.
+ * <br>
+ * <br>
+ * Groups warnings by category ({@code deprecation}, {@code unchecked}, {@code feature} or javac lint category)
+ * and message template (message with quoted texts, names and numbers replaced with placeholders).
+ * Only first examples of every group are printed, for larger groups a summary with warning count is printed
+ * after compilation. The full list of warnings is written to a GZIP compressed text file.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013WarningAggregator
+{
+    private static final String ENCODING = "UTF-8";
+
+    private static final Pattern JAVAC_CATEGORY = Pattern.compile( "^\\[([\\w-]+)\\]\\s*" );
+
+    private static final Pattern QUOTED = Pattern.compile( "`[^`]*`|'[^']*'|\"[^\"]*\"" );
+
+    private static final Pattern NAMED =
+        Pattern.compile( "\\b(method|value|variable|class|object|trait|type|constructor|package|getter|setter)"
+            + "\\s+[^\\s:;,]+" );
+
+    private static final Pattern MEMBER = Pattern.compile( "[\\w$.]+\\([^)]*\\)" );
+
+    private static final Pattern IN =
+        Pattern.compile( "\\bin\\s+(?!(?:class|object|trait|package|type)\\b)[\\w$.]+" );
+
+    private static final Pattern NUMBER = Pattern.compile( "\\d+" );
+
+    private int examples;
+
+    private File warningsFile;
+
+    private Map<String, Group> groups = new LinkedHashMap<String, Group>();
+
+    private List<String> warnings = new ArrayList<String>();
+
+    /**
+     * Creates warnings aggregator.
+     * 
+     * @param examples number of printed warnings of every group
+     * @param warningsFile file for full list of warnings, may be {@code null}
+     */
+    public SBT013WarningAggregator( int examples, File warningsFile )
+    {
+        this.examples = examples;
+        this.warningsFile = warningsFile;
+    }
+
+    /**
+     * Adds warning.
+     * 
+     * @param position warning position
+     * @param msg warning message
+     * @return {@code true} if the warning is one of the first examples of its group and should be printed
+     */
+    public boolean add( Position position, String msg )
+    {
+        warnings.add( format( position, msg ) );
+
+        int eol = msg.indexOf( '\n' );
+        String template = eol >= 0 ? msg.substring( 0, eol ) : msg;
+        String category;
+        Matcher matcher = JAVAC_CATEGORY.matcher( template );
+        if ( matcher.find() )
+        {
+            category = matcher.group( 1 );
+            template = template.substring( matcher.end() );
+        }
+        else
+        {
+            category = getScalacCategory( template );
+        }
+        template = QUOTED.matcher( template ).replaceAll( "*" );
+        template = NAMED.matcher( template ).replaceAll( "$1 *" );
+        template = MEMBER.matcher( template ).replaceAll( "*" );
+        template = IN.matcher( template ).replaceAll( "in *" );
+        template = NUMBER.matcher( template ).replaceAll( "#" );
+
+        String key = category + '\t' + template;
+        Group group = groups.get( key );
+        if ( group == null )
+        {
+            group = new Group( category, template );
+            groups.put( key, group );
+        }
+        group.count++;
+        return group.count <= examples;
+    }
+
+    /**
+     * Removes all added warnings.
+     */
+    public void reset()
+    {
+        groups.clear();
+        warnings.clear();
+    }
+
+    /**
+     * Prints warning counts of groups with not printed warnings.
+     * 
+     * @param logger logger
+     */
+    public void printSummary( CompilerLogger logger )
+    {
+        if ( !logger.isWarnEnabled() )
+        {
+            return;
+        }
+        for ( Group group : groups.values() )
+        {
+            if ( group.count > examples )
+            {
+                logger.warn( String.format( "%d %s warnings (%d shown): %s", group.count, group.category,
+                                            examples, group.template ) );
+            }
+        }
+        if ( warningsFile != null && !warnings.isEmpty() )
+        {
+            logger.warn( String.format( "Full list of %d warnings written to %s", warnings.size(),
+                                        warningsFile.getPath() ) );
+        }
+    }
+
+    /**
+     * Writes the full list of warnings to the GZIP compressed warnings file.
+     * If there are no warnings, the file is deleted.
+     * 
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeWarningsFile()
+        throws IOException
+    {
+        if ( warningsFile == null )
+        {
+            return;
+        }
+        if ( warnings.isEmpty() )
+        {
+            warningsFile.delete();
+            return;
+        }
+        File parentDir = warningsFile.getParentFile();
+        if ( parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs() )
+        {
+            throw new IOException( String.format( "Cannot create \"%s\" directory", parentDir.getPath() ) );
+        }
+        Writer writer =
+            new BufferedWriter( new OutputStreamWriter( new GZIPOutputStream( new FileOutputStream( warningsFile ) ),
+                                                        ENCODING ) );
+        try
+        {
+            for ( String warning : warnings )
+            {
+                writer.write( warning );
+                writer.write( '\n' );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static String getScalacCategory( String msg )
+    {
+        String result = "other";
+        if ( msg.contains( "deprecated" ) )
+        {
+            result = "deprecation";
+        }
+        else if ( msg.contains( "erasure" ) || msg.contains( "unchecked" ) )
+        {
+            result = "unchecked";
+        }
+        else if ( msg.contains( "feature" ) )
+        {
+            result = "feature";
+        }
+        return result;
+    }
+
+    // the same format as in "sbt.LoggerReporter"
+    private static String format( Position position, String msg )
+    {
+        StringBuilder result = new StringBuilder();
+        Maybe<String> sourcePath = position.sourcePath();
+        Maybe<Integer> line = position.line();
+        if ( sourcePath.isDefined() )
+        {
+            result.append( sourcePath.get() ).append( ':' );
+            if ( line.isDefined() )
+            {
+                result.append( line.get() ).append( ':' );
+            }
+            result.append( ' ' );
+        }
+        result.append( msg );
+        String lineContent = position.lineContent();
+        if ( lineContent != null && lineContent.length() > 0 )
+        {
+            result.append( '\n' ).append( lineContent );
+            Maybe<String> pointerSpace = position.pointerSpace();
+            if ( pointerSpace.isDefined() )
+            {
+                result.append( '\n' ).append( pointerSpace.get() ).append( '^' );
+            }
+        }
+        return result.toString();
+    }
+
+    private static class Group
+    {
+        private final String category;
+
+        private final String template;
+
+        private int count;
+
+        Group( String category, String template )
+        {
+            this.category = category;
+            this.template = template;
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.code.sbt.compiler.api.CompilationProblem;
+import com.google.code.sbt.compiler.api.DefaultCompilationProblem;
+import com.google.code.sbt.compiler.api.DefaultSourcePosition;
+import com.google.code.sbt.compiler.api.SourcePosition;
+
+/**
+ * Compilation warnings cache.
+ * <br>
+ * <br>
+ * Stores warnings reported for every source file (with already mapped positions), so warnings
+ * of sources not recompiled by incremental compilation can be reported again.
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013WarningCache
+{
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String ENCODING = "UTF-8";
+
+    private File cacheFile;
+
+    /**
+     * Creates compilation warnings cache.
+     * 
+     * @param cacheFile cache file
+     */
+    public SBT013WarningCache( File cacheFile )
+    {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Replaces cached warnings of recompiled sources with reported ones, removes warnings of deleted sources
+     * and returns cached warnings of sources not recompiled.
+     * 
+     * @param sourceFiles all source files
+     * @param recompiledSourceFiles recompiled source files
+     * @param reportedWarnings warnings reported during compilation, keyed by source file
+     * @return warnings of sources not recompiled
+     * @throws IOException if an I/O error occurs
+     */
+    public List<CompilationProblem> update( List<File> sourceFiles, Set<File> recompiledSourceFiles,
+                                            Map<File, List<CompilationProblem>> reportedWarnings )
+        throws IOException
+    {
+        Map<String, List<CompilationProblem>> cachedWarnings = load();
+        Map<String, List<CompilationProblem>> warnings = new LinkedHashMap<String, List<CompilationProblem>>();
+        List<CompilationProblem> result = new ArrayList<CompilationProblem>();
+        for ( File sourceFile : sourceFiles )
+        {
+            String path = sourceFile.getAbsolutePath();
+            List<CompilationProblem> sourceWarnings;
+            if ( recompiledSourceFiles.contains( sourceFile ) )
+            {
+                sourceWarnings = reportedWarnings.get( sourceFile );
+            }
+            else
+            {
+                sourceWarnings = cachedWarnings.get( path );
+                if ( sourceWarnings != null )
+                {
+                    result.addAll( sourceWarnings );
+                }
+            }
+            if ( sourceWarnings != null && !sourceWarnings.isEmpty() )
+            {
+                warnings.put( path, sourceWarnings );
+            }
+        }
+        // lists of sources not recompiled are the same instances, problems are compared by identity
+        if ( !warnings.equals( cachedWarnings ) )
+        {
+            store( warnings );
+        }
+        return result;
+    }
+
+    /**
+     * Returns all cached warnings.
+     * 
+     * @return cached warnings
+     * @throws IOException if an I/O error occurs
+     */
+    public List<CompilationProblem> getAll()
+        throws IOException
+    {
+        List<CompilationProblem> result = new ArrayList<CompilationProblem>();
+        for ( List<CompilationProblem> sourceWarnings : load().values() )
+        {
+            result.addAll( sourceWarnings );
+        }
+        return result;
+    }
+
+    private Map<String, List<CompilationProblem>> load()
+        throws IOException
+    {
+        Map<String, List<CompilationProblem>> result = new HashMap<String, List<CompilationProblem>>();
+        if ( cacheFile.isFile() )
+        {
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+            try
+            {
+                if ( in.readInt() == FORMAT_VERSION )
+                {
+                    int sourceCount = in.readInt();
+                    for ( int i = 0; i < sourceCount; i++ )
+                    {
+                        String path = readString( in );
+                        int warningCount = in.readInt();
+                        List<CompilationProblem> sourceWarnings = new ArrayList<CompilationProblem>( warningCount );
+                        for ( int j = 0; j < warningCount; j++ )
+                        {
+                            String category = readString( in );
+                            String message = readString( in );
+                            String severity = readString( in );
+                            int line = in.readInt();
+                            String lineContent = readString( in );
+                            int offset = in.readInt();
+                            int pointer = in.readInt();
+                            String positionPath = readString( in );
+                            SourcePosition position =
+                                new DefaultSourcePosition( line, lineContent, offset, pointer,
+                                                           positionPath != null ? new File( positionPath ) : null );
+                            sourceWarnings.add( new DefaultCompilationProblem( category, message, position,
+                                                                               severity ) );
+                        }
+                        result.put( path, sourceWarnings );
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return result;
+    }
+
+    private void store( Map<String, List<CompilationProblem>> warnings )
+        throws IOException
+    {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( cacheFile ) ) );
+        try
+        {
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( warnings.size() );
+            for ( Map.Entry<String, List<CompilationProblem>> entry : warnings.entrySet() )
+            {
+                writeString( out, entry.getKey() );
+                out.writeInt( entry.getValue().size() );
+                for ( CompilationProblem warning : entry.getValue() )
+                {
+                    SourcePosition position = warning.getPosition();
+                    writeString( out, warning.getCategory() );
+                    writeString( out, warning.getMessage() );
+                    writeString( out, warning.getSeverity() );
+                    out.writeInt( position.getLine() );
+                    writeString( out, position.getLineContent() );
+                    out.writeInt( position.getOffset() );
+                    out.writeInt( position.getPointer() );
+                    File file = position.getFile();
+                    writeString( out, file != null ? file.getPath() : null );
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    // "DataOutput.writeUTF" is limited to 64KB
+    private static void writeString( DataOutputStream out, String value )
+        throws IOException
+    {
+        if ( value == null )
+        {
+            out.writeInt( -1 );
+        }
+        else
+        {
+            byte[] bytes = value.getBytes( ENCODING );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    private static String readString( DataInputStream in )
+        throws IOException
+    {
+        String result = null;
+        int length = in.readInt();
+        if ( length >= 0 )
+        {
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            result = new String( bytes, ENCODING );
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013-2017 Grzegorz Slowikowski (gslowikowski at gmail dot com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.google.code.sbt.compiler.sbt013;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link SBT013SourceHashCache} benchmark.
+ * <br>
+ * <br>
+ * Generates source files and measures the time of computing their hashes:
+ * <ul>
+ * <li>serially, without cache (what SBT does when stamping sources),</li>
+ * <li>with cold cache (all hashes computed in parallel, cache file written),</li>
+ * <li>with warm cache (cache file read, files only checked for size and modification time),</li>
+ * <li>with all files touched (all hashes computed again, cache file written).</li>
+ * </ul>
+ * Source files are read once before measurement, so all measurements are done with files in the operating system
+ * cache. Minimum and median times of all iterations are printed.
+ * <br>
+ * <br>
+ * Usage (after {@code mvn test-compile} in this module):
+ * <pre>
+ * java -cp target/classes:target/test-classes com.google.code.sbt.compiler.sbt013.SBT013SourceHashCacheBenchmark
+ *     &lt;work directory&gt; [source count (20000)] [source size (3500)] [iterations (5)]
+ * </pre>
+ *
+ * @author <a href="mailto:gslowikowski@gmail.com">Grzegorz Slowikowski</a>
+ */
+public class SBT013SourceHashCacheBenchmark
+{
+    private static final int SOURCES_PER_PACKAGE = 100;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args work directory, source count, source size in bytes, iteration count
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main( String[] args )
+        throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println( "Usage: SBT013SourceHashCacheBenchmark <work directory> [source count]"
+                + " [source size] [iterations]" );
+            System.exit( 1 );
+        }
+        File workDirectory = new File( args[0] );
+        int sourceCount = args.length > 1 ? Integer.parseInt( args[1] ) : 20000;
+        int sourceSize = args.length > 2 ? Integer.parseInt( args[2] ) : 3500;
+        int iterations = args.length > 3 ? Integer.parseInt( args[3] ) : 5;
+
+        List<File> sourceFiles = generateSources( new File( workDirectory, "src" ), sourceCount, sourceSize );
+        File cacheFile = new File( workDirectory, "compile.hashes" );
+        System.out.println( String.format( "%d sources of %d bytes, %d processors, %d iterations", sourceCount,
+                                           sourceSize, Runtime.getRuntime().availableProcessors(), iterations ) );
+        hashSerially( sourceFiles ); // warm up JIT and operating system file cache
+
+        long[] serialTimes = new long[iterations];
+        long[] coldTimes = new long[iterations];
+        long[] warmTimes = new long[iterations];
+        long[] touchedTimes = new long[iterations];
+        for ( int i = 0; i < iterations; i++ )
+        {
+            long ts = System.nanoTime();
+            hashSerially( sourceFiles );
+            serialTimes[i] = System.nanoTime() - ts;
+
+            if ( cacheFile.isFile() && !cacheFile.delete() )
+            {
+                throw new IOException( String.format( "Cannot delete \"%s\" file", cacheFile.getPath() ) );
+            }
+            ts = System.nanoTime();
+            hashWithCache( cacheFile, sourceFiles );
+            coldTimes[i] = System.nanoTime() - ts;
+
+            ts = System.nanoTime();
+            hashWithCache( cacheFile, sourceFiles );
+            warmTimes[i] = System.nanoTime() - ts;
+
+            long lastModified = ( System.currentTimeMillis() / 1000L + i + 1 ) * 1000L;
+            for ( File sourceFile : sourceFiles )
+            {
+                sourceFile.setLastModified( lastModified );
+            }
+            ts = System.nanoTime();
+            hashWithCache( cacheFile, sourceFiles );
+            touchedTimes[i] = System.nanoTime() - ts;
+        }
+
+        print( "serial SHA-1, no cache", serialTimes );
+        print( "cold cache", coldTimes );
+        print( "warm cache", warmTimes );
+        print( "all files touched", touchedTimes );
+    }
+
+    private static List<File> generateSources( File sourceDirectory, int sourceCount, int sourceSize )
+        throws IOException
+    {
+        List<File> result = new ArrayList<File>( sourceCount );
+        for ( int i = 0; i < sourceCount; i++ )
+        {
+            File packageDirectory = new File( sourceDirectory, "p" + ( i / SOURCES_PER_PACKAGE ) );
+            if ( !packageDirectory.isDirectory() && !packageDirectory.mkdirs() )
+            {
+                throw new IOException( String.format( "Cannot create \"%s\" directory", packageDirectory.getPath() ) );
+            }
+            File sourceFile = new File( packageDirectory, "Source" + i + ".scala" );
+            if ( !sourceFile.isFile() || sourceFile.length() != sourceSize )
+            {
+                StringBuilder content = new StringBuilder( sourceSize + 100 );
+                content.append( "package p" ).append( i / SOURCES_PER_PACKAGE ).append( "\n\nclass Source" )
+                    .append( i ).append( " {\n" );
+                for ( int m = 0; true; m++ )
+                {
+                    String method = "  def method" + m + "(x: Int): Int = x * " + i + " + " + m + "\n";
+                    if ( content.length() + method.length() + 1 > sourceSize )
+                    {
+                        break;
+                    }
+                    content.append( method );
+                }
+                while ( content.length() + 1 < sourceSize )
+                {
+                    content.append( ' ' );
+                }
+                content.append( '}' );
+                OutputStream os = new FileOutputStream( sourceFile );
+                try
+                {
+                    os.write( content.toString().getBytes( "UTF-8" ) );
+                }
+                finally
+                {
+                    os.close();
+                }
+            }
+            result.add( sourceFile );
+        }
+        return result;
+    }
+
+    private static void hashSerially( List<File> sourceFiles )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new RuntimeException( e ); // SHA-1 is required in every Java platform implementation
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        for ( File sourceFile : sourceFiles )
+        {
+            InputStream is = new FileInputStream( sourceFile );
+            try
+            {
+                int n = is.read( buf );
+                while ( n != -1 )
+                {
+                    digest.update( buf, 0, n );
+                    n = is.read( buf );
+                }
+            }
+            finally
+            {
+                is.close();
+            }
+            SBT013SourceHashCache.toHex( digest.digest() );
+        }
+    }
+
+    private static void hashWithCache( File cacheFile, List<File> sourceFiles )
+        throws IOException
+    {
+        SBT013SourceHashCache cache = new SBT013SourceHashCache( cacheFile );
+        cache.getHashes( sourceFiles );
+        cache.save();
+    }
+
+    private static void print( String name, long[] times )
+    {
+        long[] sorted = times.clone();
+        Arrays.sort( sorted );
+        System.out.println( String.format( "%-24s min %6d ms, median %6d ms", name, sorted[0] / 1000000L,
+                                           sorted[sorted.length / 2] / 1000000L ) );
+    }
+
+}